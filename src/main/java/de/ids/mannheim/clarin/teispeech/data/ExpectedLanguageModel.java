@@ -0,0 +1,167 @@
+package de.ids.mannheim.clarin.teispeech.data;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.korpora.useful.LangUtilities;
+
+import opennlp.tools.langdetect.Language;
+import opennlp.tools.langdetect.LanguageDetectorModel;
+import opennlp.tools.ml.maxent.GISModel;
+import opennlp.tools.ml.model.AbstractModel;
+import opennlp.tools.ml.model.Context;
+import opennlp.tools.ml.model.MaxentModel;
+
+/**
+ * the parameters of an OpenNLP language detection model restricted to the
+ * expected languages.
+ *
+ * <p>
+ * The maximum entropy model scores a text by summing, per language, the
+ * parameters of its n-gram features; the probabilities are the normalized
+ * exponentials of these sums. Restricting the sums to the expected languages
+ * and normalizing over these gives the same probabilities as predicting all
+ * languages and renormalizing the expected ones, at a fraction of the work.
+ * This only holds for maximum entropy ({@link GISModel GIS}) models, like the
+ * built-in one; perceptron and naive Bayes models score differently and are
+ * not restricted.
+ *
+ * @author bfi
+ *
+ */
+public final class ExpectedLanguageModel {
+
+    /**
+     * restricted models, by model and sorted expected languages
+     */
+    private static final Map<LanguageDetectorModel, Map<Set<String>, ExpectedLanguageModel>> models = new ConcurrentHashMap<>();
+
+    /**
+     * the expected languages, as in the model
+     */
+    private final String[] languages;
+
+    /**
+     * the parameters of the expected languages per feature; features without
+     * parameters for them are left out
+     */
+    private final Map<String, double[]> parameters;
+
+    private ExpectedLanguageModel(String[] languages,
+            Map<String, double[]> parameters) {
+        this.languages = languages;
+        this.parameters = parameters;
+    }
+
+    /**
+     * get the model restricted to the expected languages; it is made once per
+     * model and set of languages
+     *
+     * @param model
+     *     the language detection model
+     * @param expected
+     *     the expected languages, as ISO language codes
+     * @return the restricted model, or {@code null} if the model is not a
+     *     maximum entropy model, so that all languages have to be predicted
+     */
+    public static ExpectedLanguageModel get(LanguageDetectorModel model,
+            Set<String> expected) {
+        if (!(model.getMaxentModel() instanceof GISModel)) {
+            return null;
+        }
+        return models.computeIfAbsent(model, m -> new ConcurrentHashMap<>())
+                .computeIfAbsent(new TreeSet<>(expected),
+                        e -> restrict(model.getMaxentModel(), e));
+    }
+
+    @SuppressWarnings("unchecked")
+    private static ExpectedLanguageModel restrict(MaxentModel model,
+            Set<String> expected) {
+        Map<String, Context> pmap = (Map<String, Context>) ((AbstractModel) model)
+                .getDataStructures()[1];
+        // position of model outcomes among the expected languages, or -1:
+        int[] positions = new int[model.getNumOutcomes()];
+        List<String> languages = new ArrayList<>();
+        for (int o = 0; o < positions.length; o++) {
+            String outcome = model.getOutcome(o);
+            if (expected.contains(LangUtilities.getLanguageString(outcome))) {
+                positions[o] = languages.size();
+                languages.add(outcome);
+            } else {
+                positions[o] = -1;
+            }
+        }
+        Map<String, double[]> parameters = new HashMap<>();
+        for (Map.Entry<String, Context> feature : pmap.entrySet()) {
+            Context context = feature.getValue();
+            double[] restricted = null;
+            int[] outcomes = context.getOutcomes();
+            double[] params = context.getParameters();
+            for (int i = 0; i < outcomes.length; i++) {
+                int pos = positions[outcomes[i]];
+                if (pos >= 0 && params[i] != 0) {
+                    if (restricted == null) {
+                        restricted = new double[languages.size()];
+                    }
+                    restricted[pos] += params[i];
+                }
+            }
+            if (restricted != null) {
+                parameters.put(feature.getKey(), restricted);
+            }
+        }
+        return new ExpectedLanguageModel(languages.toArray(new String[0]),
+                parameters);
+    }
+
+    /**
+     * predict the expected languages of a text
+     *
+     * @param context
+     *     the features of the text, as produced by the context generator of
+     *     the model
+     * @return the expected languages, most likely first; their confidences
+     *     sum up to 1
+     */
+    public Language[] predictLanguages(String[] context) {
+        double[] sums = new double[languages.length];
+        for (String feature : context) {
+            double[] params = parameters.get(feature);
+            if (params != null) {
+                for (int i = 0; i < params.length; i++) {
+                    sums[i] += params[i];
+                }
+            }
+        }
+        double max = Double.NEGATIVE_INFINITY;
+        for (double sum : sums) {
+            max = Math.max(max, sum);
+        }
+        double normal = 0;
+        for (int i = 0; i < sums.length; i++) {
+            sums[i] = Math.exp(sums[i] - max);
+            normal += sums[i];
+        }
+        Language[] result = new Language[languages.length];
+        for (int i = 0; i < languages.length; i++) {
+            result[i] = new Language(languages[i], sums[i] / normal);
+        }
+        Arrays.sort(result, (l1, l2) -> Double.compare(l2.getConfidence(),
+                l1.getConfidence()));
+        return result;
+    }
+
+    /**
+     * @return the number of expected languages known to the model
+     */
+    public int size() {
+        return languages.length;
+    }
+
+}
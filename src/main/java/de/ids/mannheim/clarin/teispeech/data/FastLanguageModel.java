@@ -0,0 +1,192 @@
+package de.ids.mannheim.clarin.teispeech.data;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import opennlp.tools.langdetect.LanguageDetectorFactory;
+import opennlp.tools.langdetect.LanguageDetectorModel;
+import opennlp.tools.ml.maxent.GISModel;
+import opennlp.tools.ml.model.AbstractModel;
+import opennlp.tools.ml.model.Context;
+
+/**
+ * a binary representation of the parameters of an OpenNLP language detection
+ * model that loads fast: no ZIP archive, no parsing of numbers, and the
+ * outcome lists shared by many features stored once.
+ *
+ * <p>
+ * Layout, big-endian: magic number and version; the factory class name;
+ * the outcomes; the distinct outcome lists; per feature its name, the index
+ * of its outcome list and its parameters. Strings are stored as length and
+ * UTF-8 bytes.
+ *
+ * <p>
+ * Only maximum entropy (GIS) models, like the built-in one, can be
+ * converted; perceptron and naive Bayes models stay in the OpenNLP format.
+ * Reading copies the parameters into the heap, as OpenNLP needs them as
+ * arrays, so a model takes as much heap as one read in OpenNLP format.
+ *
+ * @author bfi
+ *
+ */
+public final class FastLanguageModel {
+
+    /**
+     * the usual file name extension
+     */
+    public static final String EXTENSION = ".ldm";
+
+    private static final int MAGIC = 0x544c444d; // TLDM
+    private static final int VERSION = 1;
+
+    private FastLanguageModel() {
+    }
+
+    /**
+     * write a model in the fast-load format
+     *
+     * @param model
+     *     the model; it must be a maximum entropy (GIS) model
+     * @param file
+     *     the output file
+     * @throws IOException
+     *     if the model cannot be written
+     * @throws IllegalArgumentException
+     *     if the model is not a maximum entropy model
+     */
+    @SuppressWarnings("unchecked")
+    public static void write(LanguageDetectorModel model, File file)
+            throws IOException {
+        if (!(model.getMaxentModel() instanceof GISModel)) {
+            throw new IllegalArgumentException(String.format(
+                    "Only maximum entropy (GIS) models can be converted, "
+                            + "not %s; use the OpenNLP format instead!",
+                    model.getMaxentModel().getClass().getSimpleName()));
+        }
+        Object[] data = ((AbstractModel) model.getMaxentModel())
+                .getDataStructures();
+        Map<String, Context> pmap = (Map<String, Context>) data[1];
+        String[] outcomes = (String[]) data[2];
+        // distinct outcome lists:
+        Map<List<Integer>, Integer> patternIndex = new HashMap<>();
+        List<int[]> patterns = new ArrayList<>();
+        for (Context context : pmap.values()) {
+            List<Integer> key = toList(context.getOutcomes());
+            if (!patternIndex.containsKey(key)) {
+                patternIndex.put(key, patterns.size());
+                patterns.add(context.getOutcomes());
+            }
+        }
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(file)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            writeString(out, model.getFactory().getClass().getName());
+            out.writeInt(outcomes.length);
+            for (String outcome : outcomes) {
+                writeString(out, outcome);
+            }
+            out.writeInt(patterns.size());
+            for (int[] pattern : patterns) {
+                out.writeInt(pattern.length);
+                for (int o : pattern) {
+                    out.writeInt(o);
+                }
+            }
+            out.writeInt(pmap.size());
+            for (Map.Entry<String, Context> feature : pmap.entrySet()) {
+                Context context = feature.getValue();
+                writeString(out, feature.getKey());
+                out.writeInt(patternIndex.get(toList(context.getOutcomes())));
+                for (double param : context.getParameters()) {
+                    out.writeDouble(param);
+                }
+            }
+        }
+    }
+
+    /**
+     * read a model in the fast-load format
+     *
+     * @param file
+     *     the file
+     * @return the model
+     * @throws IOException
+     *     if the file cannot be read or is not in the fast-load format
+     */
+    public static LanguageDetectorModel read(File file) throws IOException {
+        ByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(file.toPath(),
+                StandardOpenOption.READ)) {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0,
+                    channel.size());
+        }
+        if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+            throw new IOException(String.format(
+                    "«%s» is not a fast-load language model!", file));
+        }
+        String factoryName = readString(buffer);
+        String[] outcomes = new String[buffer.getInt()];
+        for (int i = 0; i < outcomes.length; i++) {
+            outcomes[i] = readString(buffer);
+        }
+        int[][] patterns = new int[buffer.getInt()][];
+        for (int i = 0; i < patterns.length; i++) {
+            patterns[i] = new int[buffer.getInt()];
+            IntBuffer ints = buffer.asIntBuffer();
+            ints.get(patterns[i]);
+            buffer.position(buffer.position() + 4 * patterns[i].length);
+        }
+        int featureCount = buffer.getInt();
+        String[] features = new String[featureCount];
+        Context[] contexts = new Context[featureCount];
+        for (int i = 0; i < featureCount; i++) {
+            features[i] = readString(buffer);
+            int[] pattern = patterns[buffer.getInt()];
+            double[] params = new double[pattern.length];
+            DoubleBuffer doubles = buffer.asDoubleBuffer();
+            doubles.get(params);
+            buffer.position(buffer.position() + 8 * params.length);
+            contexts[i] = new Context(pattern, params);
+        }
+        LanguageDetectorFactory factory = LanguageDetectorFactory.class
+                .getName().equals(factoryName) ? new LanguageDetectorFactory()
+                        : LanguageDetectorFactory.create(factoryName);
+        return new LanguageDetectorModel(
+                new GISModel(contexts, features, outcomes), new HashMap<>(),
+                factory);
+    }
+
+    private static List<Integer> toList(int[] array) {
+        return Arrays.asList(Arrays.stream(array).boxed()
+                .toArray(Integer[]::new));
+    }
+
+    private static void writeString(DataOutputStream out, String string)
+            throws IOException {
+        byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.getInt()];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+}
@@ -1,6 +1,7 @@
 package de.ids.mannheim.clarin.teispeech.data;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
@@ -8,6 +9,13 @@ import java.util.Objects;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
+import javax.xml.transform.Templates;
+import javax.xml.transform.Transformer;
+import javax.xml.transform.TransformerConfigurationException;
+import javax.xml.transform.TransformerException;
+import javax.xml.transform.TransformerFactory;
+import javax.xml.transform.stream.StreamSource;
+
 import org.jdom2.Content;
 import org.jdom2.Document;
 import org.jdom2.Element;
@@ -15,11 +23,16 @@ import org.jdom2.JDOMException;
 import org.jdom2.Namespace;
 import org.jdom2.Text;
 import org.jdom2.filter.ElementFilter;
-import org.jdom2.transform.XSLTransformer;
+import org.jdom2.transform.JDOMResult;
+import org.jdom2.transform.JDOMSource;
 import org.jdom2.util.IteratorIterable;
 import org.jdom2.xpath.XPathFactory;
 import org.korpora.useful.XMLUtilities;
 
+import de.ids.mannheim.clarin.teispeech.utilities.DFAPattern;
+import de.ids.mannheim.clarin.teispeech.utilities.ParallelUtilities;
+import net.sf.saxon.BasicTransformerFactory;
+
 /**
  * Parser for cGAT transcription
  *
@@ -32,48 +45,147 @@ public class GATParser extends AbstractParser {
 
     private static final XPathFactory xpf = XPathFactory.instance();
 
-    // String PATTERNS_FILE_PATH = "/org/exmaralda/folker/data/Patterns.xml";
-    private static final String PATTERNS_FILE_PATH = "Patterns.xml";
     private static final Namespace TEI_NS = Namespace
             .getNamespace(NameSpaces.TEI_NS);
 
 //    private final static Logger LOGGER = LoggerFactory
 //            .getLogger(GATParser.class.getName());
-    private Map<String, Pattern> minimalPatterns;
+    private final Map<String, Pattern> minimalPatterns;
     private static final String MINIMAL_TRANSFORMER_FILE_PATH = "transformcontribution.xsl";
     // String MINIMAL_TRANSFORMER_FILE_PATH =
     // "/org/exmaralda/folker/data/transformcontribution.xsl";
-    private XSLTransformer minimalTransformer;
 
-    private Map<String, Pattern> basicPatterns;
+    private final Map<String, Pattern> basicPatterns;
     private static final String BASIC_TRANSFORMER_FILE_PATH = "transformcontribution_basic.xsl";
     // String BASIC_TRANSFORMER_FILE_PATH =
     // "/org/exmaralda/folker/data/transformcontribution_basic.xsl";
-    private XSLTransformer basicTransformer;
+
+    /**
+     * the compiled stylesheets are thread-safe and shared by all parsers;
+     * {@link Transformer}s are made per call of
+     * {@link #parseDocument(Document, int)}
+     */
+    private static final TransformerFactory stf = new BasicTransformerFactory();
+    private static final Templates minimalTemplates = getTemplates(
+            MINIMAL_TRANSFORMER_FILE_PATH);
+    private static final Templates basicTemplates = getTemplates(
+            BASIC_TRANSFORMER_FILE_PATH);
+
+    /**
+     * the number of threads for parsing contributions
+     */
+    private final int parallelism;
+
+    private final PatternRegistry registry;
+
+    /**
+     * whether to match patterns with automata, see {@link DFAPattern}
+     */
+    private final boolean automata;
 
     public GATParser() throws JDOMException, IOException {
         this("universal");
-        System.setProperty("javax.xml.transform.TransformerFactory",
-                "net.sf.saxon.TransformerFactoryImpl");
     }
 
-    private GATParser(
-            @SuppressWarnings("SameParameterValue") String languageCode)
+    /**
+     * make a parser using the patterns for a language
+     *
+     * @param languageCode
+     *     a language code; the corresponding language variant from
+     *     {@code Patterns.xml} is used, the default patterns if there is none
+     * @throws JDOMException
+     *     pattern file broken
+     * @throws IOException
+     *     pattern file unavailable
+     */
+    public GATParser(String languageCode) throws JDOMException, IOException {
+        this(languageCode, 1);
+    }
+
+    /**
+     * make a parser using the patterns for a language, parsing contributions
+     * in parallel
+     *
+     * @param languageCode
+     *     a language code; the corresponding language variant from
+     *     {@code Patterns.xml} is used, the default patterns if there is none
+     * @param parallelism
+     *     the number of threads for parsing contributions; 1 to parse
+     *     sequentially
+     * @throws JDOMException
+     *     pattern file broken
+     * @throws IOException
+     *     pattern file unavailable
+     */
+    public GATParser(String languageCode, int parallelism)
             throws JDOMException, IOException {
+        this(languageCode, parallelism, false);
+    }
 
-        PatternReader pr = new PatternReader(GATParser.class.getClassLoader()
-                .getResourceAsStream(PATTERNS_FILE_PATH));
-        minimalPatterns = pr.getAllPatterns(2, languageCode);
-        basicPatterns = pr.getAllPatterns(3, languageCode);
+    /**
+     * make a parser using the patterns for a language, parsing contributions
+     * in parallel
+     *
+     * @param languageCode
+     *     a language code; the corresponding language variant from
+     *     {@code Patterns.xml} is used, the default patterns if there is none
+     * @param parallelism
+     *     the number of threads for parsing contributions; 1 to parse
+     *     sequentially
+     * @param automata
+     *     whether to match patterns with deterministic automata where
+     *     possible, which takes linear time, also on malformed input
+     * @throws JDOMException
+     *     pattern file broken
+     * @throws IOException
+     *     pattern file unavailable
+     */
+    public GATParser(String languageCode, int parallelism, boolean automata)
+            throws JDOMException, IOException {
+        registry = PatternRegistry.getInstance();
+        minimalPatterns = registry.getPatterns(2, languageCode);
+        basicPatterns = registry.getPatterns(3, languageCode);
+        this.parallelism = Math.max(1, parallelism);
+        this.automata = automata;
+    }
 
-        minimalTransformer = new XSLTransformer(
-                XMLUtilities.parseXMLviaJDOM(GATParser.class.getClassLoader()
-                        .getResourceAsStream(MINIMAL_TRANSFORMER_FILE_PATH)));
+    private static Templates getTemplates(String path) {
+        try (InputStream xsl = GATParser.class.getClassLoader()
+                .getResourceAsStream(path)) {
+            return stf.newTemplates(
+                    new StreamSource(Objects.requireNonNull(xsl)));
+        } catch (TransformerConfigurationException | IOException e) {
+            throw new RuntimeException(
+                    String.format("XSLT broken: «%s»", path), e);
+        }
+    }
 
-        basicTransformer = new XSLTransformer(
-                XMLUtilities.parseXMLviaJDOM(GATParser.class.getClassLoader()
-                        .getResourceAsStream(BASIC_TRANSFORMER_FILE_PATH)));
+    private static Transformer newTransformer(Templates templates) {
+        try {
+            return templates.newTransformer();
+        } catch (TransformerConfigurationException e) {
+            throw new RuntimeException(e);
+        }
+    }
 
+    /**
+     * transform a contribution
+     *
+     * @param transformer
+     *     the transformer to use
+     * @param contribution
+     *     the contribution with pseudo markup
+     * @return the transformed content
+     * @throws TransformerException
+     *     if the transformation fails
+     */
+    private static List<Content> transform(Transformer transformer,
+            Element contribution) throws TransformerException {
+        List<Content> v = new ArrayList<>();
+        v.add(contribution);
+        JDOMResult result = new JDOMResult();
+        transformer.transform(new JDOMSource(v), result);
+        return result.getResult();
     }
 
     /**
@@ -185,107 +297,14 @@ public class GATParser extends AbstractParser {
                     unparseds.add(up);
                 }
             }
-            for (Element unparsed : unparseds) {
-
-                List<PositionTimeMapping> timePositions = new ArrayList<>();
-                StringBuilder text = new StringBuilder();
-                boolean totalParseOK = true;
-                for (Content c : unparsed.getContent()) {
-                    if (c instanceof Text) {
-                        String eventText = ((Text) c).getText();
-                        // System.err.println("ETEXT: " + eventText);
-                        if (!(minimalPatterns.get("GAT_EVENT")
-                                .matcher(eventText).matches())) {
-                            // System.err.println(String.format(
-                            // "EVENT DID NOT MATCH: «%s»", eventText));
-                            totalParseOK = false;
-                            break;
-                        }
-                        // System.err.println("MATCHED!");
-                        text.append(eventText);
-                    } else {
-                        Element e = (Element) c;
-                        String timeID = e.getAttributeValue("synch");
-                        timePositions.add(
-                                new PositionTimeMapping(text.length(), timeID));
-                    }
-                }
-                totalParseOK = totalParseOK
-                        && (minimalPatterns.get("GAT_CONTRIBUTION")
-                                .matcher(text.toString()).matches());
-                if (!totalParseOK) {
-                    // System.err.println(
-                    // "TOTAL PARSE FAILED: " + unparsed.getText());
-                    continue;
-                }
-                try {
-                    text = new StringBuilder(parseText(text.toString(),
-                            "GAT_NON_PHO", minimalPatterns));
-                    text = new StringBuilder(parseText(text.toString(),
-                            "GAT_PAUSE", minimalPatterns));
-                    text = new StringBuilder(parseText(text.toString(),
-                            "GAT_BREATHE", minimalPatterns));
-                    text = new StringBuilder(parseText(text.toString(),
-                            "GAT_UNCERTAIN", minimalPatterns));
-                    // removed on 06-03-2009
-                    // text = parseText(text, "GAT_UNINTELLIGIBLE");
-                    text = new StringBuilder(parseText(text.toString(),
-                            "GAT_WORD", minimalPatterns));
-                    text = new StringBuilder(parseText(text.toString(),
-                            "GAT_WORDBOUNDARY", minimalPatterns));
-
-                    // Element contribution = unparsed.getParentElement();
-                    XMLUtilities.replaceContentWithParse(unparsed,
-                            text.toString());
-
-                    List<Element> l = unparsed.getChildren("GAT_UNCERTAIN"); // drin
-                                                                             // lassen
-                    List<Element> uncertains = new ArrayList<>();
-                    for (Object o : l) {
-                        Element uc = (Element) (o);
-                        uncertains.add(uc);
-                    }
-                    for (Element uc : uncertains) {
-                        String ucText = uc.getText();
-                        ucText = parseText(ucText, "GAT_ALTERNATIVE", // nicht
-                                minimalPatterns);
-                        ucText = parseText(ucText, "GAT_WORD", minimalPatterns); // anpassen
-                                                                                 // auf
-                                                                                 // Buchstaben;
-                                                                                 // Satzzeichen
-                                                                                 // als
-                                                                                 // ISO-<punctuation>
-                        ucText = parseText(ucText, "GAT_WORDBOUNDARY", // (egal?)
-                                minimalPatterns);
-                        XMLUtilities.replaceContentWithParse(uc, ucText);
-                    }
-
-                    IteratorIterable<Element> i2 = unparsed.getDescendants(
-                            new ElementFilter("GAT_ALTERNATIVE"));
-                    List<Element> alternatives = new ArrayList<>();
-                    while (i2.hasNext()) {
-                        Element al = (i2.next());
-                        alternatives.add(al);
-                    }
-                    for (Element al : alternatives) {
-                        String alText = al.getText();
-                        alText = parseText(alText, "GAT_WORD", minimalPatterns);
-                        alText = parseText(alText, "GAT_WORDBOUNDARY",
-                                minimalPatterns);
-                        XMLUtilities.replaceContentWithParse(al, alText);
-                    }
-//                    contribution.setAttribute("parse-level", "2");
-                    insertTimeReferences(unparsed, timePositions);
-                    List<Content> v = new ArrayList<>();
-                    v.add(unparsed);
-                    // System.err.println(Utilities.elementToString(contribution));
-                    List<Content> transformedContribution = minimalTransformer
-                            .transform(v);
-//                    Element contributionParent = contribution
-//                            .getParentElement();
-                    unparsed.setContent(transformedContribution);
-                } catch (IOException | JDOMException ex) {
-                    ex.printStackTrace();
+            ThreadLocal<Transformer> minimalTransformer = ThreadLocal
+                    .withInitial(() -> newTransformer(minimalTemplates));
+            List<List<Content>> parsed = ParallelUtilities.map(unparseds,
+                    parallelism, unparsed -> parseMinimal(unparsed.clone(),
+                            minimalTransformer.get()));
+            for (int i = 0; i < unparseds.size(); i++) {
+                if (parsed.get(i) != null) {
+                    unparseds.get(i).setContent(parsed.get(i));
                 }
             }
         } else if (parseLevel == 3) {
@@ -296,238 +315,421 @@ public class GATParser extends AbstractParser {
                 Element up = (unparsedIterator.next());
                 unparseds.add(up);
             }
-            for (Element unparsed : unparseds) {
-                List<PositionTimeMapping> timePositions = new ArrayList<>();
-                StringBuilder text = new StringBuilder();
-                boolean totalParseOK = true;
-                for (Object c : unparsed.getContent()) {
-                    if (c instanceof Text) {
-                        String eventText = ((Text) c).getText();
-                        if (!(basicPatterns.get("GAT_EVENT").matcher(eventText)
-                                .matches())) {
-                            totalParseOK = false;
-                            break;
-                        }
-                        text.append(eventText);
-                    } else {
-                        Element e = (Element) c;
-                        String timeID = e
-                                .getAttributeValue("timepoint-reference");
-                        timePositions.add(
-                                new PositionTimeMapping(text.length(), timeID));
-                    }
-                }
-                if (unparsed.getParentElement()
-                        .getAttribute("speaker-reference") != null) {
-                    // totalParseOK = totalParseOK &&
-                    // (text.matches(basicPatterns.get("GAT_CONTRIBUTION")));
-                    // changed 28-03-2012 replace empty boundaries with pipe
-                    // symbol boundary
-                    totalParseOK = totalParseOK
-                            && ((basicPatterns.get("GAT_CONTRIBUTION")
-                                    .matcher(text.toString()).matches())
-                                    || basicPatterns.get("GAT_CONTRIBUTION")
-                                            .matcher(basicPatterns
-                                                    .get("GAT_EMPTY_BOUNDARY")
-                                                    .matcher(text.toString())
-                                                    .replaceAll("| "))
-                                            .matches());
-                } else {
-                    totalParseOK = totalParseOK
-                            && (basicPatterns.get("GAT_NO_SPEAKER_CONTRIBUTION")
-                                    .matcher(text.toString()).matches());
+            ThreadLocal<Transformer> basicTransformer = ThreadLocal
+                    .withInitial(() -> newTransformer(basicTemplates));
+            List<Element> parsed = ParallelUtilities.map(unparseds,
+                    parallelism, unparsed -> {
+                Element contribution = unparsed.getParentElement();
+                Element copy = contribution.clone();
+                int index = contribution.indexOf(unparsed);
+                return parseBasic((Element) copy.getContent(index),
+                        basicTransformer.get());
+            });
+            // put the transformed contributions in the right place in the
+            // document
+            for (int i = 0; i < unparseds.size(); i++) {
+                Element contribution = unparseds.get(i).getParentElement();
+                Element contributionParent = contribution.getParentElement();
+                if (parsed.get(i) != null && contributionParent != null) {
+                    contributionParent.setContent(
+                            contributionParent.indexOf(contribution),
+                            parsed.get(i));
                 }
-                if (!totalParseOK) {
-                    // System.out.println("TOTAL PARSE FAILED");
-                    continue;
+            }
+        }
+        System.err.format("FINISH (%d)!\n", parseLevel);
+        DocUtilities.makeChange(doc,
+                String.format("parsed for cGAT level %d.", parseLevel));
+    }
+
+    /**
+     * parse an utterance on the minimal level
+     *
+     * @param unparsed
+     *     the utterance, detached from the document
+     * @param minimalTransformer
+     *     the transformer for the minimal level
+     * @return the new content of the utterance, or null if it cannot be parsed
+     */
+    private List<Content> parseMinimal(Element unparsed,
+            Transformer minimalTransformer) {
+        List<PositionTimeMapping> timePositions = new ArrayList<>();
+        StringBuilder text = new StringBuilder();
+        boolean totalParseOK = true;
+        for (Content c : unparsed.getContent()) {
+            if (c instanceof Text) {
+                String eventText = ((Text) c).getText();
+                // System.err.println("ETEXT: " + eventText);
+                if (!matches(minimalPatterns.get("GAT_EVENT"), eventText)) {
+                    // System.err.println(String.format(
+                    // "EVENT DID NOT MATCH: «%s»", eventText));
+                    totalParseOK = false;
+                    break;
                 }
-                try {
-
-                    // make sure angle brackets do not interfere with the XML
-                    // parsing
-                    text = new StringBuilder(
-                            text.toString().replaceAll("<", "\u2329")
-                                    .replaceAll(">", "\u232A"));
-
-                    text = new StringBuilder(parseText(text.toString(),
-                            "GAT_PSEUDO_PHRASE_BOUNDARY", basicPatterns));
-
-                    text = new StringBuilder(parseText(text.toString(),
-                            "GAT_NON_PHO", basicPatterns));
-                    text = new StringBuilder(parseText(text.toString(),
-                            "GAT_PAUSE", basicPatterns));
-                    text = new StringBuilder(parseText(text.toString(),
-                            "GAT_BREATHE", basicPatterns));
-
-                    // patterns specific to basic transcription
-                    text = new StringBuilder(parseText(text.toString(),
-                            "GAT_COMMENT_START_ESCAPED", basicPatterns));
-                    text = new StringBuilder(parseText(text.toString(),
-                            "GAT_COMMENT_END_ESCAPED", basicPatterns));
-                    text = new StringBuilder(parseText(text.toString(),
-                            "GAT_PHRASE_BOUNDARY", basicPatterns));
-                    text = new StringBuilder(parseText(text.toString(),
-                            "GAT_LATCHING", basicPatterns));
-                    // end patterns specific to basic transcription
-
-                    text = new StringBuilder(parseText(text.toString(),
-                            "GAT_UNCERTAIN", basicPatterns));
-                    // removed on 06-03-2009
-                    // text = parseText(text, "GAT_UNINTELLIGIBLE");
-
-                    text = new StringBuilder(parseText(text.toString(),
-                            "GAT_WORD", basicPatterns));
-                    text = new StringBuilder(parseText(text.toString(),
-                            "GAT_WORDBOUNDARY", basicPatterns));
-
-                    Element contribution = unparsed.getParentElement();
-                    XMLUtilities.replaceContentWithParse(contribution,
-                            text.toString());
-
-                    List<Element> l = contribution.getChildren("GAT_UNCERTAIN");
-                    List<Element> uncertains = new ArrayList<>();
-                    for (Object o : l) {
-                        Element uc = (Element) (o);
-                        uncertains.add(uc);
-                    }
-                    for (Element uc : uncertains) {
-                        String ucText = uc.getText();
-                        ucText = parseText(ucText, "GAT_ALTERNATIVE",
-                                basicPatterns);
-                        ucText = parseText(ucText, "GAT_WORD", basicPatterns);
-                        ucText = parseText(ucText, "GAT_WORDBOUNDARY",
-                                basicPatterns);
-                        XMLUtilities.replaceContentWithParse(uc, ucText);
-                    }
+                // System.err.println("MATCHED!");
+                text.append(eventText);
+            } else {
+                Element e = (Element) c;
+                String timeID = e.getAttributeValue("synch");
+                timePositions.add(
+                        new PositionTimeMapping(text.length(), timeID));
+            }
+        }
+        totalParseOK = totalParseOK
+                && matches(minimalPatterns.get("GAT_CONTRIBUTION"), text);
+        if (!totalParseOK) {
+            // System.err.println(
+            // "TOTAL PARSE FAILED: " + unparsed.getText());
+            return null;
+        }
+        try {
+            text = new StringBuilder(parseText(text.toString(),
+                    "GAT_NON_PHO", minimalPatterns));
+            text = new StringBuilder(parseText(text.toString(),
+                    "GAT_PAUSE", minimalPatterns));
+            text = new StringBuilder(parseText(text.toString(),
+                    "GAT_BREATHE", minimalPatterns));
+            text = new StringBuilder(parseText(text.toString(),
+                    "GAT_UNCERTAIN", minimalPatterns));
+            // removed on 06-03-2009
+            // text = parseText(text, "GAT_UNINTELLIGIBLE");
+            text = new StringBuilder(parseText(text.toString(),
+                    "GAT_WORD", minimalPatterns));
+            text = new StringBuilder(parseText(text.toString(),
+                    "GAT_WORDBOUNDARY", minimalPatterns));
+
+            // Element contribution = unparsed.getParentElement();
+            XMLUtilities.replaceContentWithParse(unparsed,
+                    text.toString());
+
+            List<Element> l = unparsed.getChildren("GAT_UNCERTAIN"); // drin
+                                                                     // lassen
+            List<Element> uncertains = new ArrayList<>();
+            for (Object o : l) {
+                Element uc = (Element) (o);
+                uncertains.add(uc);
+            }
+            for (Element uc : uncertains) {
+                String ucText = uc.getText();
+                ucText = parseText(ucText, "GAT_ALTERNATIVE", // nicht
+                        minimalPatterns);
+                ucText = parseText(ucText, "GAT_WORD", minimalPatterns); // anpassen
+                                                                         // auf
+                                                                         // Buchstaben;
+                                                                         // Satzzeichen
+                                                                         // als
+                                                                         // ISO-<punctuation>
+                ucText = parseText(ucText, "GAT_WORDBOUNDARY", // (egal?)
+                        minimalPatterns);
+                XMLUtilities.replaceContentWithParse(uc, ucText);
+            }
 
-                    IteratorIterable<Element> i2 = contribution.getDescendants(
-                            new ElementFilter("GAT_ALTERNATIVE"));
-                    List<Element> alternatives = new ArrayList<>();
-                    while (i2.hasNext()) {
-                        Element al = (i2.next());
-                        alternatives.add(al);
-                    }
-                    for (Element al : alternatives) {
-                        String alText = al.getText();
-                        alText = parseText(alText, "GAT_WORD", basicPatterns);
-                        alText = parseText(alText, "GAT_WORDBOUNDARY",
-                                basicPatterns);
-                        XMLUtilities.replaceContentWithParse(al, alText);
-                    }
+            IteratorIterable<Element> i2 = unparsed.getDescendants(
+                    new ElementFilter("GAT_ALTERNATIVE"));
+            List<Element> alternatives = new ArrayList<>();
+            while (i2.hasNext()) {
+                Element al = (i2.next());
+                alternatives.add(al);
+            }
+            for (Element al : alternatives) {
+                String alText = al.getText();
+                alText = parseText(alText, "GAT_WORD", minimalPatterns);
+                alText = parseText(alText, "GAT_WORDBOUNDARY",
+                        minimalPatterns);
+                XMLUtilities.replaceContentWithParse(al, alText);
+            }
+//            contribution.setAttribute("parse-level", "2");
+            insertTimeReferences(unparsed, timePositions);
+            // System.err.println(Utilities.elementToString(contribution));
+            List<Content> transformedContribution = transform(
+                    minimalTransformer, unparsed);
+//            Element contributionParent = contribution
+//                    .getParentElement();
+            return transformedContribution;
+        } catch (IOException | JDOMException | TransformerException ex) {
+            ex.printStackTrace();
+            return null;
+        }
+    }
 
-                    // take care of accent markup and lengthening...
-                    IteratorIterable<Element> i3 = contribution
-                            .getDescendants(new ElementFilter("GAT_WORD"));
-                    List<Element> words = new ArrayList<>();
-                    while (i3.hasNext()) {
-                        Element w = (i3.next());
-                        words.add(w);
-                    }
-                    for (Element w : words) {
-                        String wText = w.getText();
-                        wText = parseText(wText, "GAT_STRONG_ACCENT_SYLLABLE",
-                                basicPatterns);
-                        wText = parseText(wText, "GAT_ACCENT_SYLLABLE",
-                                basicPatterns);
-                        wText = parseText(wText, "GAT_LENGTHENING",
-                                basicPatterns);
-                        XMLUtilities.replaceContentWithParse(w, wText);
-                    }
-                    // ... and of lengthening inside accent syllables
-                    IteratorIterable<? extends Content> i4 = contribution
-                            .getDescendants(
-                                    new ElementFilter("GAT_ACCENT_SYLLABLE")
-                                            .or(new ElementFilter(
-                                                    "GAT_STRONG_ACCENT_SYLLABLE")));
-                    List<Element> syllables = new ArrayList<>();
-                    while (i4.hasNext()) {
-                        Element s = (Element) (i4.next());
-                        syllables.add(s);
-                    }
-                    for (Element s : syllables) {
-                        String sText = s.getText();
-                        sText = parseText(sText, "GAT_LENGTHENING",
-                                basicPatterns);
-                        List<Content> newContent4 = XMLUtilities
-                                .readJDOMFromString("<X>" + sText + "</X>")
-                                .getRootElement().removeContent();
-                        s.removeContent();
-                        s.setContent(newContent4);
-                    }
+    /**
+     * parse a contribution on the basic level
+     *
+     * @param unparsed
+     *     the unparsed content in a contribution detached from the document
+     * @param basicTransformer
+     *     the transformer for the basic level
+     * @return the transformed contribution, or null if it cannot be parsed
+     */
+    private Element parseBasic(Element unparsed, Transformer basicTransformer) {
+        List<PositionTimeMapping> timePositions = new ArrayList<>();
+        StringBuilder text = new StringBuilder();
+        boolean totalParseOK = true;
+        for (Object c : unparsed.getContent()) {
+            if (c instanceof Text) {
+                String eventText = ((Text) c).getText();
+                if (!matches(basicPatterns.get("GAT_EVENT"), eventText)) {
+                    totalParseOK = false;
+                    break;
+                }
+                text.append(eventText);
+            } else {
+                Element e = (Element) c;
+                String timeID = e
+                        .getAttributeValue("timepoint-reference");
+                timePositions.add(
+                        new PositionTimeMapping(text.length(), timeID));
+            }
+        }
+        if (unparsed.getParentElement()
+                .getAttribute("speaker-reference") != null) {
+            // totalParseOK = totalParseOK &&
+            // (text.matches(basicPatterns.get("GAT_CONTRIBUTION")));
+            // changed 28-03-2012 replace empty boundaries with pipe
+            // symbol boundary
+            totalParseOK = totalParseOK
+                    && (matches(basicPatterns.get("GAT_CONTRIBUTION"), text)
+                            || matches(basicPatterns.get("GAT_CONTRIBUTION"),
+                                    basicPatterns.get("GAT_EMPTY_BOUNDARY")
+                                            .matcher(text.toString())
+                                            .replaceAll("| ")));
+        } else {
+            totalParseOK = totalParseOK
+                    && matches(basicPatterns.get("GAT_NO_SPEAKER_CONTRIBUTION"),
+                            text);
+        }
+        if (!totalParseOK) {
+            // System.out.println("TOTAL PARSE FAILED");
+            return null;
+        }
+        try {
+
+            // make sure angle brackets do not interfere with the XML
+            // parsing
+            text = new StringBuilder(
+                    text.toString().replaceAll("<", "\u2329")
+                            .replaceAll(">", "\u232A"));
+
+            text = new StringBuilder(parseText(text.toString(),
+                    "GAT_PSEUDO_PHRASE_BOUNDARY", basicPatterns));
+
+            text = new StringBuilder(parseText(text.toString(),
+                    "GAT_NON_PHO", basicPatterns));
+            text = new StringBuilder(parseText(text.toString(),
+                    "GAT_PAUSE", basicPatterns));
+            text = new StringBuilder(parseText(text.toString(),
+                    "GAT_BREATHE", basicPatterns));
+
+            // patterns specific to basic transcription
+            text = new StringBuilder(parseText(text.toString(),
+                    "GAT_COMMENT_START_ESCAPED", basicPatterns));
+            text = new StringBuilder(parseText(text.toString(),
+                    "GAT_COMMENT_END_ESCAPED", basicPatterns));
+            text = new StringBuilder(parseText(text.toString(),
+                    "GAT_PHRASE_BOUNDARY", basicPatterns));
+            text = new StringBuilder(parseText(text.toString(),
+                    "GAT_LATCHING", basicPatterns));
+            // end patterns specific to basic transcription
+
+            text = new StringBuilder(parseText(text.toString(),
+                    "GAT_UNCERTAIN", basicPatterns));
+            // removed on 06-03-2009
+            // text = parseText(text, "GAT_UNINTELLIGIBLE");
+
+            text = new StringBuilder(parseText(text.toString(),
+                    "GAT_WORD", basicPatterns));
+            text = new StringBuilder(parseText(text.toString(),
+                    "GAT_WORDBOUNDARY", basicPatterns));
+
+            Element contribution = unparsed.getParentElement();
+            XMLUtilities.replaceContentWithParse(contribution,
+                    text.toString());
+
+            List<Element> l = contribution.getChildren("GAT_UNCERTAIN");
+            List<Element> uncertains = new ArrayList<>();
+            for (Object o : l) {
+                Element uc = (Element) (o);
+                uncertains.add(uc);
+            }
+            for (Element uc : uncertains) {
+                String ucText = uc.getText();
+                ucText = parseText(ucText, "GAT_ALTERNATIVE",
+                        basicPatterns);
+                ucText = parseText(ucText, "GAT_WORD", basicPatterns);
+                ucText = parseText(ucText, "GAT_WORDBOUNDARY",
+                        basicPatterns);
+                XMLUtilities.replaceContentWithParse(uc, ucText);
+            }
 
-//                    contribution.setAttribute("parse-level", "3");
-                    insertTimeReferences(contribution, timePositions);
-
-                    // transform the pseudo markup into the target markup...
-                    List<Content> v = new ArrayList<>();
-                    v.add(contribution);
-                    Element transformedContribution = (Element) (basicTransformer
-                            .transform(v).get(0));
-
-                    // ... hierarchize it...
-                    List<Content> content = transformedContribution
-                            .removeContent();
-                    Element currentLine = new Element("line");
-                    for (Object c : content) {
-                        Element e = (Element) c;
-                        currentLine.addContent(e);
-                        if ("boundary".equals(e.getName()) && "final"
-                                .equals(e.getAttributeValue("type"))) {
-                            transformedContribution.addContent(currentLine);
-                            currentLine = new Element("line");
-                        }
-                    }
-                    // this is for speakerless contributions which do not have
-                    // to end with a boundary
-                    if (currentLine.getContentSize() > 0) {
-                        transformedContribution.addContent(currentLine);
-                    }
+            IteratorIterable<Element> i2 = contribution.getDescendants(
+                    new ElementFilter("GAT_ALTERNATIVE"));
+            List<Element> alternatives = new ArrayList<>();
+            while (i2.hasNext()) {
+                Element al = (i2.next());
+                alternatives.add(al);
+            }
+            for (Element al : alternatives) {
+                String alText = al.getText();
+                alText = parseText(alText, "GAT_WORD", basicPatterns);
+                alText = parseText(alText, "GAT_WORDBOUNDARY",
+                        basicPatterns);
+                XMLUtilities.replaceContentWithParse(al, alText);
+            }
 
-                    // ... and put it in the right place in the document
-                    Element contributionParent = contribution
-                            .getParentElement();
-                    contributionParent.setContent(
-                            contributionParent.indexOf(contribution),
-                            transformedContribution);
-                } catch (IOException | JDOMException ex) {
-                    ex.printStackTrace();
+            // take care of accent markup and lengthening...
+            IteratorIterable<Element> i3 = contribution
+                    .getDescendants(new ElementFilter("GAT_WORD"));
+            List<Element> words = new ArrayList<>();
+            while (i3.hasNext()) {
+                Element w = (i3.next());
+                words.add(w);
+            }
+            for (Element w : words) {
+                String wText = w.getText();
+                wText = parseText(wText, "GAT_STRONG_ACCENT_SYLLABLE",
+                        basicPatterns);
+                wText = parseText(wText, "GAT_ACCENT_SYLLABLE",
+                        basicPatterns);
+                wText = parseText(wText, "GAT_LENGTHENING",
+                        basicPatterns);
+                XMLUtilities.replaceContentWithParse(w, wText);
+            }
+            // ... and of lengthening inside accent syllables
+            IteratorIterable<? extends Content> i4 = contribution
+                    .getDescendants(
+                            new ElementFilter("GAT_ACCENT_SYLLABLE")
+                                    .or(new ElementFilter(
+                                            "GAT_STRONG_ACCENT_SYLLABLE")));
+            List<Element> syllables = new ArrayList<>();
+            while (i4.hasNext()) {
+                Element s = (Element) (i4.next());
+                syllables.add(s);
+            }
+            for (Element s : syllables) {
+                String sText = s.getText();
+                sText = parseText(sText, "GAT_LENGTHENING",
+                        basicPatterns);
+                List<Content> newContent4 = XMLUtilities
+                        .readJDOMFromString("<X>" + sText + "</X>")
+                        .getRootElement().removeContent();
+                s.removeContent();
+                s.setContent(newContent4);
+            }
+
+//            contribution.setAttribute("parse-level", "3");
+            insertTimeReferences(contribution, timePositions);
+
+            // transform the pseudo markup into the target markup...
+            Element transformedContribution = (Element) (transform(
+                    basicTransformer, contribution).get(0));
+
+            // ... hierarchize it...
+            List<Content> content = transformedContribution
+                    .removeContent();
+            Element currentLine = new Element("line");
+            for (Object c : content) {
+                Element e = (Element) c;
+                currentLine.addContent(e);
+                if ("boundary".equals(e.getName()) && "final"
+                        .equals(e.getAttributeValue("type"))) {
+                    transformedContribution.addContent(currentLine);
+                    currentLine = new Element("line");
                 }
             }
+            // this is for speakerless contributions which do not have
+            // to end with a boundary
+            if (currentLine.getContentSize() > 0) {
+                transformedContribution.addContent(currentLine);
+            }
+
+            return transformedContribution;
+        } catch (IOException | JDOMException | TransformerException ex) {
+            ex.printStackTrace();
+            return null;
         }
-        System.err.format("FINISH (%d)!\n", parseLevel);
-        DocUtilities.makeChange(doc,
-                String.format("parsed for cGAT level %d.", parseLevel));
     }
 
+    /**
+     * tag all matches of a pattern in the text nodes of a pseudo-XML string
+     *
+     * <p>
+     * Matches are streamed into a single buffer, so tagging is linear in the
+     * length of the text. As none of the patterns applied here looks behind,
+     * this is equivalent to re-matching on the tagged text after every match.
+     *
+     * @param text
+     *     the text, possibly containing pseudo markup from earlier passes
+     * @param patternName
+     *     the name of the pattern, also used as the tag name
+     * @param patterns
+     *     the patterns for the current level
+     * @return the text with matches tagged
+     * @throws JDOMException
+     *     if the pseudo markup is broken
+     * @throws IOException
+     *     if reading the pseudo markup fails
+     */
     private String parseText(String text, String patternName,
             Map<String, Pattern> patterns) throws JDOMException, IOException {
         String docString = "<X>" + text + "</X>";
         // System.out.println("=== " + docString);
         Element e = XMLUtilities.readJDOMFromString(docString).getRootElement();
-        StringBuilder returnText = new StringBuilder();
+        Pattern p = patterns.get(patternName);
+        StringBuilder returnText = new StringBuilder(text.length());
         for (Object o : e.getContent()) {
             if (!(o instanceof Text)) {
                 returnText.append(XMLUtilities.elementToString((Element) o));
                 continue;
             }
-            Pattern p = patterns.get(patternName);
             String thisText = ((Text) o).getText();
-            Matcher m = p.matcher(thisText);
-            int fromWhere = 0;
-            while (m.find(fromWhere)) {
-                int i1 = m.start();
-                int i2 = m.end();
-                thisText = thisText.substring(0, i1) + "<" + patternName + ">"
-                        + thisText.substring(i1, i2) + "</" + patternName + ">"
-                        + thisText.substring(i2);
-                m = p.matcher(thisText);
-                fromWhere = i2 + 2 * patternName.length() + 5;
+            int last = 0;
+            if (automata) {
+                DFAPattern dfa = registry.getAutomaton(p);
+                int[] m = dfa.find(thisText, 0);
+                while (m != null) {
+                    tag(returnText, thisText, last, m[0], m[1], patternName);
+                    last = m[1];
+                    m = dfa.find(thisText, m[1] > m[0] ? m[1] : m[1] + 1);
+                }
+            } else {
+                Matcher m = p.matcher(thisText);
+                while (m.find()) {
+                    tag(returnText, thisText, last, m.start(), m.end(),
+                            patternName);
+                    last = m.end();
+                }
             }
-            returnText.append(thisText);
+            returnText.append(thisText, last, thisText.length());
         }
         return returnText.toString();
     }
 
+    /**
+     * append the text before a match and the tagged match
+     */
+    private static void tag(StringBuilder buffer, String text, int last,
+            int start, int end, String patternName) {
+        buffer.append(text, last, start).append('<').append(patternName)
+                .append('>').append(text, start, end).append("</")
+                .append(patternName).append('>');
+    }
+
+    /**
+     * check whether a text matches a pattern completely
+     *
+     * @param pattern
+     *     the pattern
+     * @param text
+     *     the text
+     * @return whether the text matches
+     */
+    private boolean matches(Pattern pattern, CharSequence text) {
+        if (automata) {
+            return registry.getAutomaton(pattern).matches(text);
+        }
+        return pattern.matcher(text).matches();
+    }
+
     private void insertTimeReferences(Element contribution,
             List<PositionTimeMapping> timePositions) {
         /*
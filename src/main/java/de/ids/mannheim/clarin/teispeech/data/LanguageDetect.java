@@ -3,11 +3,12 @@ package de.ids.mannheim.clarin.teispeech.data;
 import static de.ids.mannheim.clarin.teispeech.data.NameSpaces.TEI_NS;
 
 import java.io.IOException;
-import java.io.InputStream;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -15,6 +16,8 @@ import java.util.function.Function;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
+import de.ids.mannheim.clarin.teispeech.data.LanguageDetectionCache.Prediction;
+import de.ids.mannheim.clarin.teispeech.utilities.ParallelUtilities;
 import org.apache.commons.lang3.StringUtils;
 import org.jooq.lambda.Seq;
 import org.korpora.useful.LangUtilities;
@@ -28,6 +31,7 @@ import org.w3c.dom.Element;
 
 import opennlp.tools.langdetect.Language;
 import opennlp.tools.langdetect.LanguageDetector;
+import opennlp.tools.langdetect.LanguageDetectorContextGenerator;
 import opennlp.tools.langdetect.LanguageDetectorME;
 import opennlp.tools.langdetect.LanguageDetectorModel;
 
@@ -59,22 +63,58 @@ public class LanguageDetect {
 
     private Document doc;
 
-    private static final LanguageDetector languageDetector;
-    static {
-        // load the trained Language Detector Model file
-        try (InputStream modelStream = LanguageDetect.class.getClassLoader()
-                .getResourceAsStream(MODEL_PATH)) {
+    /**
+     * where the model comes from; by default, the class path
+     */
+    private static LanguageModelProvider modelProvider = LanguageModelProvider
+            .classpath(MODEL_PATH);
 
-            assert modelStream != null;
-            LanguageDetectorModel trainedModel = new LanguageDetectorModel(
-                    modelStream);
+    /**
+     * the model shared by all instances, loaded on first use
+     */
+    private static LanguageDetectorModel sharedModel;
 
-            // load the model
-            languageDetector = new LanguageDetectorME(trainedModel);
-        } catch (IOException e) {
-            throw new RuntimeException(e);
-        }
-    }
+    /**
+     * the model of this instance
+     */
+    private final LanguageDetectorModel trainedModel;
+
+    /**
+     * {@link LanguageDetectorME} is not thread-safe, so every thread gets its
+     * own, sharing the model
+     */
+    private final ThreadLocal<LanguageDetector> languageDetector;
+
+    /**
+     * the features of texts; thread-safe
+     */
+    private final LanguageDetectorContextGenerator contextGenerator;
+
+    /**
+     * the model restricted to the expected languages
+     */
+    private final ExpectedLanguageModel expectedModel;
+
+    /**
+     * the number of threads for language prediction
+     */
+    private final int parallelism;
+
+    /**
+     * predictions for utterance texts, possibly shared with other instances
+     */
+    private final LanguageDetectionCache cache;
+
+    /**
+     * assigns languages by script before prediction; {@code null} if not
+     * wanted
+     */
+    private ScriptClassifier scriptClassifier;
+
+    /**
+     * whether to keep a language prior per speaker
+     */
+    private boolean speakerPrior;
 
     // private static int MIN_UTTERANCE_SIZE = 5;
     private final int minUtteranceSize;
@@ -97,6 +137,54 @@ public class LanguageDetect {
      */
     public LanguageDetect(Document doc, String language, List<String> expected,
             int mini) {
+        this(doc, language, expected, mini, 1);
+    }
+
+    /**
+     * make new, predicting languages in parallel;
+     *
+     * @param doc
+     *     XML DOM document
+     *
+     * @param language
+     *     the default language, an ISO language code
+     * @param expected
+     *     the languages that are expected in the document, for constraining
+     *     language identification
+     * @param mini
+     *     the minimal length of an utterance to attempt language detection
+     * @param parallelism
+     *     the number of threads for language prediction; 1 to predict
+     *     sequentially
+     */
+    public LanguageDetect(Document doc, String language, List<String> expected,
+            int mini, int parallelism) {
+        this(doc, language, expected, mini, parallelism,
+                new LanguageDetectionCache());
+    }
+
+    /**
+     * make new, predicting languages in parallel and sharing predictions
+     *
+     * @param doc
+     *     XML DOM document
+     *
+     * @param language
+     *     the default language, an ISO language code
+     * @param expected
+     *     the languages that are expected in the document, for constraining
+     *     language identification
+     * @param mini
+     *     the minimal length of an utterance to attempt language detection
+     * @param parallelism
+     *     the number of threads for language prediction; 1 to predict
+     *     sequentially
+     * @param cache
+     *     the predictions for utterance texts, e.g. shared by the documents
+     *     of a batch
+     */
+    public LanguageDetect(Document doc, String language, List<String> expected,
+            int mini, int parallelism, LanguageDetectionCache cache) {
         this.doc = doc;
         // use German as fallback in case nothing else is specified
         // in the document or the expected languages
@@ -108,6 +196,15 @@ public class LanguageDetect {
             expectedLanguages.addAll(expected);
         }
         this.minUtteranceSize = mini;
+        this.parallelism = Math.max(1, parallelism);
+        this.cache = cache;
+        trainedModel = getModel();
+        languageDetector = ThreadLocal
+                .withInitial(() -> new LanguageDetectorME(trainedModel));
+        contextGenerator = trainedModel.getFactory().getContextGenerator();
+        expectedModel = expectedLanguages != null
+                ? ExpectedLanguageModel.get(trainedModel, expectedLanguages)
+                : null;
     }
 
     /**
@@ -124,7 +221,26 @@ public class LanguageDetect {
      */
     public LanguageDetect(Document doc, String language, String[] expected,
             int mini) {
-        this(doc, "deu", Arrays.asList(expected), mini);
+        this(doc, language, expected, mini, 1);
+    }
+
+    /**
+     * Detect languages in document, predicting languages in parallel
+     *
+     * @param doc
+     *     XML DOM document
+     * @param language
+     *     fallback language
+     * @param expected
+     *     expected languages
+     * @param mini
+     *     minimal number of words in utterance for language detection
+     * @param parallelism
+     *     the number of threads for language prediction
+     */
+    public LanguageDetect(Document doc, String language, String[] expected,
+            int mini, int parallelism) {
+        this(doc, "deu", Arrays.asList(expected), mini, parallelism);
     }
 
     /**
@@ -137,6 +253,62 @@ public class LanguageDetect {
         this(doc, "deu", new String[] { "tur", "en" }, 5);
     }
 
+    /**
+     * @return the language detection model shared by all instances, loaded
+     *     on first use
+     */
+    public static synchronized LanguageDetectorModel getModel() {
+        if (sharedModel == null) {
+            try {
+                sharedModel = modelProvider.load();
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        }
+        return sharedModel;
+    }
+
+    /**
+     * set where the language detection model comes from; instances made
+     * afterwards use the new model
+     *
+     * @param provider
+     *     the model source
+     */
+    public static synchronized void setModelProvider(
+            LanguageModelProvider provider) {
+        modelProvider = provider;
+        sharedModel = null;
+    }
+
+    /**
+     * whether to assign the language by Unicode script before prediction,
+     * where only one of the expected languages uses the scripts of an
+     * utterance, see {@link ScriptClassifier}; default: no
+     *
+     * @param byScript
+     *     whether to assign by script
+     */
+    public void setByScript(boolean byScript) {
+        scriptClassifier = byScript && expectedLanguages != null
+                ? new ScriptClassifier(expectedLanguages)
+                : null;
+    }
+
+    /**
+     * whether to keep a running language distribution per speaker
+     * ({@code @who}), see {@link SpeakerPrior}: utterances of speakers
+     * settled on one language are only predicted now and then, and
+     * utterances with too few words are assigned that language instead of
+     * being skipped; default: no
+     *
+     * @param speakerPrior
+     *     whether to use speaker priors
+     */
+    public void setSpeakerPrior(boolean speakerPrior) {
+        this.speakerPrior = speakerPrior;
+    }
+
     /**
      * run detection, do not force
      *
@@ -158,7 +330,13 @@ public class LanguageDetect {
     public Document detect(boolean force) {
         long processed = 0;
         long unprocessed = 0;
+        long byScript = 0;
+        long byPrior = 0;
+        long rescued = 0;
         Map<String, Integer> changed = new HashMap<>();
+        // first, decide what can be decided without prediction, and collect
+        // the texts of the other utterances:
+        List<Detection> detections = new ArrayList<>();
         List<Element> utterances = XMLUtilities
                 .toElementList(doc.getElementsByTagNameNS(TEI_NS, "u"));
         for (Element utter : utterances) {
@@ -203,7 +381,16 @@ public class LanguageDetect {
                 }
             }
             // haven't found language yet:
-            if (words.size() > 0 && words.size() < minUtteranceSize) {
+            String speaker = utter.hasAttribute("who")
+                    ? utter.getAttribute("who")
+                    : ((Element) utter.getParentNode()).getAttribute("who");
+            if (words.size() > 0 && words.size() < minUtteranceSize
+                    && speakerPrior) {
+                // decide with the speaker prior:
+                detections.add(new Detection(utter, defaultLanguage, speaker,
+                        null, words.size()));
+                continue;
+            } else if (words.size() > 0 && words.size() < minUtteranceSize) {
                 Comment com = doc.createComment(String.format(
                         "too few words (%d < %d) to make a good language prediction",
                         words.size(), minUtteranceSize));
@@ -218,7 +405,12 @@ public class LanguageDetect {
                     continue;
                 }
                 text = utter.getTextContent();
-                if (StringUtils.split(text).length < minUtteranceSize) {
+                if (StringUtils.split(text).length < minUtteranceSize
+                        && speakerPrior) {
+                    detections.add(new Detection(utter, defaultLanguage,
+                            speaker, null, StringUtils.split(text).length));
+                    continue;
+                } else if (StringUtils.split(text).length < minUtteranceSize) {
                     Comment com = doc.createComment(String.format(
                             "too few words (%d < %d) to make a good language prediction",
                             StringUtils.split(text).length, minUtteranceSize));
@@ -235,28 +427,93 @@ public class LanguageDetect {
                 utter.getParentNode().insertBefore(commy, utter);
                 continue;
             }
-            List<Language> languages = Stream
-                    .of(languageDetector.predictLanguages(text))
-                    .filter(l -> expectedLanguages.contains(
-                            LangUtilities.getLanguageString(l.getLang())))
-                    .collect(Collectors.toList());
+            if (scriptClassifier != null) {
+                String lang = scriptClassifier.classify(text);
+                if (lang != null) {
+                    lang = LangUtilities.getLanguageString(lang);
+                    Comment com = doc.createComment(String.format(
+                            "%s: by script (%s)", lang,
+                            ScriptClassifier.scriptNames(text)));
+                    utter.getParentNode().insertBefore(com, utter);
+                    utter.setAttribute("xml:lang", lang);
+                    Utilities.incCounter(changed, lang);
+                    processed++;
+                    byScript++;
+                    continue;
+                }
+            }
+            detections.add(new Detection(utter, defaultLanguage, speaker,
+                    text, -1));
+        }
+        // then, predict; this does not touch the document:
+        List<Outcome> outcomes;
+        if (speakerPrior) {
+            // speakers are independent of each other, but not their
+            // utterances:
+            Map<String, List<Integer>> bySpeaker = new LinkedHashMap<>();
+            for (int i = 0; i < detections.size(); i++) {
+                bySpeaker.computeIfAbsent(detections.get(i).speaker,
+                        k -> new ArrayList<>()).add(i);
+            }
+            List<List<Integer>> speakers = new ArrayList<>(bySpeaker.values());
+            List<List<Outcome>> speakerOutcomes = ParallelUtilities.map(
+                    speakers, parallelism, indices -> {
+                        SpeakerPrior prior = detections.get(indices.get(0)).speaker
+                                .isEmpty() ? null : new SpeakerPrior();
+                        return indices.stream()
+                                .map(i -> decide(detections.get(i), prior))
+                                .collect(Collectors.toList());
+                    });
+            Outcome[] inOrder = new Outcome[detections.size()];
+            for (int s = 0; s < speakers.size(); s++) {
+                for (int k = 0; k < speakers.get(s).size(); k++) {
+                    inOrder[speakers.get(s).get(k)] = speakerOutcomes.get(s)
+                            .get(k);
+                }
+            }
+            outcomes = Arrays.asList(inOrder);
+        } else {
+            outcomes = ParallelUtilities.map(detections, parallelism,
+                    detection -> decide(detection, null));
+        }
+        // finally, apply predictions in document order:
+        for (int i = 0; i < detections.size(); i++) {
+            Detection detection = detections.get(i);
+            Element utter = detection.utterance;
+            String defaultLanguage = detection.defaultLanguage;
+            Outcome outcome = outcomes.get(i);
+            if (outcome.prior != null) {
+                String lang = LangUtilities.getLanguageString(outcome.prior);
+                Comment com = doc.createComment(detection.text == null
+                        ? String.format(
+                                "%s: by speaker prior (too few words: %d < %d)",
+                                lang, detection.words, minUtteranceSize)
+                        : String.format("%s: by speaker prior", lang));
+                utter.getParentNode().insertBefore(com, utter);
+                utter.setAttribute("xml:lang", lang);
+                Utilities.incCounter(changed, lang);
+                processed++;
+                byPrior++;
+                if (detection.text == null) {
+                    rescued++;
+                }
+                continue;
+            } else if (detection.text == null) {
+                Comment com = doc.createComment(String.format(
+                        "too few words (%d < %d) to make a good language prediction",
+                        detection.words, minUtteranceSize));
+                utter.getParentNode().insertBefore(com, utter);
+                unprocessed++;
+                continue;
+            }
+            List<Language> languages = outcome.prediction.languages;
             LOGGER.info("expected: {}; detected:{}", expectedLanguages,
                     languages);
-            Comment com = doc.createComment(
-                    Seq.seq(languages).filter(l -> l.getConfidence() > 0.005)
-                            .map(l -> String.format("%s: %.02f",
-                                    LangUtilities.getLanguageString(
-                                            l.getLang()),
-                                    l.getConfidence()))
-                            .toString("; "));
+            Comment com = doc.createComment(outcome.prediction.comment);
             utter.getParentNode().insertBefore(com, utter);
-            if (languages.size() >= 2 && languages.get(0).getConfidence() > 0
-                    && languages.get(1).getConfidence() > 0
-                    && (languages.get(0).getConfidence() / languages.get(1)
-                            .getConfidence() > GOOD_RELATION)) {
+            String lang = clearLanguage(languages);
+            if (lang != null) {
                 // in clear cases, believe language guess
-                String lang = LangUtilities
-                        .getLanguageString(languages.get(0).getLang());
                 utter.setAttribute("xml:lang", lang);
                 Utilities.incCounter(changed, lang);
                 processed++;
@@ -284,12 +541,136 @@ public class LanguageDetect {
             }
 
         }
+        StringBuilder details = new StringBuilder();
+        if (scriptClassifier != null) {
+            details.append(String.format(", %d by script", byScript));
+        }
+        if (speakerPrior) {
+            details.append(String.format(
+                    ", %d by speaker prior (%d with too few words)", byPrior,
+                    rescued));
+        }
         String changeMsg = String.format(
-                "detected languages in %d utterances; skipped %d (found: %s).",
-                processed, unprocessed, changed);
+                "detected languages in %d utterances%s; skipped %d (found: %s).",
+                processed, details, unprocessed, changed);
         LOGGER.info(changeMsg);
+        LOGGER.info(String.format(
+                "prediction cache: %d hits, %d misses (hit rate %.1f%%)",
+                cache.getHits(), cache.getMisses(),
+                cache.getHitRate() * 100));
         DocUtilities.makeChange(doc, changeMsg);
         return doc;
     }
 
+    /**
+     * decide on the language of an utterance: predict it, unless the speaker
+     * prior makes that unnecessary
+     *
+     * @param detection
+     *     the utterance
+     * @param prior
+     *     the speaker prior, which is updated, or {@code null}
+     * @return the outcome
+     */
+    private Outcome decide(Detection detection, SpeakerPrior prior) {
+        String settled = prior != null ? prior.settled() : null;
+        if (detection.text == null
+                || settled != null && !prior.sample()) {
+            return new Outcome(null, settled);
+        }
+        Prediction prediction = cache.get(trainedModel, expectedLanguages,
+                detection.text, this::predict);
+        if (prior != null) {
+            String lang = clearLanguage(prediction.languages);
+            if (lang != null) {
+                prior.observe(lang);
+            }
+        }
+        return new Outcome(prediction, null);
+    }
+
+    /**
+     * the language of a clear prediction, i.e. if the most likely language
+     * is {@link #GOOD_RELATION} times as likely as the next one
+     *
+     * @param languages
+     *     the predicted languages, most likely first
+     * @return the language, or {@code null}
+     */
+    private static String clearLanguage(List<Language> languages) {
+        if (languages.size() >= 2 && languages.get(0).getConfidence() > 0
+                && languages.get(1).getConfidence() > 0
+                && (languages.get(0).getConfidence() / languages.get(1)
+                        .getConfidence() > GOOD_RELATION)) {
+            return LangUtilities.getLanguageString(languages.get(0).getLang());
+        }
+        return null;
+    }
+
+    /**
+     * predict the expected languages of a text; only the expected languages
+     * are scored if possible
+     *
+     * @param text
+     *     the text
+     * @return the expected languages, most likely first, and the comment
+     *     reporting them
+     */
+    private Prediction predict(String text) {
+        List<Language> languages;
+        if (expectedModel != null) {
+            languages = Arrays.asList(expectedModel
+                    .predictLanguages(contextGenerator.getContext(text)));
+        } else {
+            languages = Stream
+                    .of(languageDetector.get().predictLanguages(text))
+                    .filter(l -> expectedLanguages.contains(
+                            LangUtilities.getLanguageString(l.getLang())))
+                    .collect(Collectors.toList());
+        }
+        String comment = Seq.seq(languages)
+                .filter(l -> l.getConfidence() > 0.005)
+                .map(l -> String.format("%s: %.02f",
+                        LangUtilities.getLanguageString(l.getLang()),
+                        l.getConfidence()))
+                .toString("; ");
+        return new Prediction(languages, comment);
+    }
+
+    /**
+     * an utterance whose language has to be predicted
+     */
+    private static class Detection {
+        private final Element utterance;
+        private final String defaultLanguage;
+        private final String speaker;
+        /**
+         * {@code null} if the utterance has too few words
+         */
+        private final String text;
+        private final int words;
+
+        private Detection(Element utterance, String defaultLanguage,
+                String speaker, String text, int words) {
+            this.utterance = utterance;
+            this.defaultLanguage = defaultLanguage;
+            this.speaker = speaker;
+            this.text = text;
+            this.words = words;
+        }
+    }
+
+    /**
+     * a prediction, or the language assigned by speaker prior
+     */
+    private static class Outcome {
+        private final Prediction prediction;
+        private final String prior;
+
+        private Outcome(Prediction prediction, String prior) {
+            this.prediction = prediction;
+            this.prior = prior;
+        }
+    }
+
 }
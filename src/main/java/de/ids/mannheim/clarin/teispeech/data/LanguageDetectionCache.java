@@ -0,0 +1,164 @@
+package de.ids.mannheim.clarin.teispeech.data;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+import opennlp.tools.langdetect.Language;
+import opennlp.tools.langdetect.LanguageDetectorModel;
+
+/**
+ * language predictions for utterance texts, to be shared by
+ * {@link LanguageDetect}s, e.g. for all documents of a batch; backchannels
+ * and formulaic utterances recur often.
+ *
+ * <p>
+ * The least recently used predictions are dropped when the cache is full. The
+ * cache is thread-safe. Predictions are kept per model, so that a cache can
+ * be shared by detectors made before and after
+ * {@link LanguageDetect#setModelProvider(LanguageModelProvider)}.
+ *
+ * @author bfi
+ *
+ */
+public class LanguageDetectionCache {
+
+    /**
+     * the default maximal number of cached predictions
+     */
+    public static final int DEFAULT_SIZE = 10000;
+
+    private final Map<Key, Prediction> predictions;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    /**
+     * make a cache of {@link #DEFAULT_SIZE}
+     */
+    public LanguageDetectionCache() {
+        this(DEFAULT_SIZE);
+    }
+
+    /**
+     * make a cache
+     *
+     * @param size
+     *     the maximal number of cached predictions
+     */
+    public LanguageDetectionCache(int size) {
+        predictions = Collections
+                .synchronizedMap(new LinkedHashMap<Key, Prediction>(16, 0.75f,
+                        true) {
+                    private static final long serialVersionUID = 1L;
+
+                    @Override
+                    protected boolean removeEldestEntry(
+                            Map.Entry<Key, Prediction> eldest) {
+                        return size() > size;
+                    }
+                });
+    }
+
+    /**
+     * get the cached prediction or predict
+     *
+     * @param model
+     *     the model predicting
+     * @param expected
+     *     the expected languages
+     * @param text
+     *     the utterance text
+     * @param predict
+     *     the prediction for texts not in the cache; called without a lock,
+     *     so that predictions can run in parallel
+     * @return the prediction
+     */
+    Prediction get(LanguageDetectorModel model, Set<String> expected,
+            String text, Function<String, Prediction> predict) {
+        Key key = new Key(model, expected, text);
+        Prediction prediction = predictions.get(key);
+        if (prediction != null) {
+            hits.incrementAndGet();
+            return prediction;
+        }
+        misses.incrementAndGet();
+        prediction = predict.apply(text);
+        predictions.put(key, prediction);
+        return prediction;
+    }
+
+    /**
+     * @return the number of predictions found in the cache
+     */
+    public long getHits() {
+        return hits.get();
+    }
+
+    /**
+     * @return the number of predictions not found in the cache
+     */
+    public long getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * @return the proportion of predictions found in the cache, 0 if there
+     *     were none
+     */
+    public double getHitRate() {
+        long total = hits.get() + misses.get();
+        return total == 0 ? 0 : (double) hits.get() / total;
+    }
+
+    /**
+     * the expected languages in a text, and the XML comment reporting them
+     */
+    static class Prediction {
+        final List<Language> languages;
+        final String comment;
+
+        Prediction(List<Language> languages, String comment) {
+            this.languages = languages;
+            this.comment = comment;
+        }
+    }
+
+    private static class Key {
+        private final LanguageDetectorModel model;
+        private final Set<String> expected;
+        private final String text;
+
+        private Key(LanguageDetectorModel model, Set<String> expected,
+                String text) {
+            this.model = model;
+            this.expected = expected;
+            this.text = text;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) o;
+            return model == other.model && text.equals(other.text)
+                    && Objects.equals(expected, other.expected);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(System.identityHashCode(model), expected,
+                    text);
+        }
+    }
+
+}
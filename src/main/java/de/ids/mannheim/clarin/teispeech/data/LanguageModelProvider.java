@@ -0,0 +1,88 @@
+package de.ids.mannheim.clarin.teispeech.data;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+
+import opennlp.tools.langdetect.LanguageDetectorModel;
+
+/**
+ * a source of the language detection model used by {@link LanguageDetect},
+ * see {@link LanguageDetect#setModelProvider(LanguageModelProvider)}
+ *
+ * @author bfi
+ *
+ */
+@FunctionalInterface
+public interface LanguageModelProvider {
+
+    /**
+     * load the model; called once per process, or after the provider has been
+     * replaced
+     *
+     * @return the model
+     * @throws IOException
+     *     if the model is unavailable or broken
+     */
+    LanguageDetectorModel load() throws IOException;
+
+    /**
+     * a model in OpenNLP format on the class path
+     *
+     * @param resource
+     *     the resource path
+     * @return the provider
+     */
+    static LanguageModelProvider classpath(String resource) {
+        return () -> {
+            try (InputStream modelStream = LanguageModelProvider.class
+                    .getClassLoader().getResourceAsStream(resource)) {
+                if (modelStream == null) {
+                    throw new FileNotFoundException(String.format(
+                            "Language model «%s» not on class path!",
+                            resource));
+                }
+                return new LanguageDetectorModel(modelStream);
+            }
+        };
+    }
+
+    /**
+     * a model in OpenNLP format in a file
+     *
+     * @param file
+     *     the model file
+     * @return the provider
+     */
+    static LanguageModelProvider file(File file) {
+        return () -> new LanguageDetectorModel(file);
+    }
+
+    /**
+     * a model in the format of {@link FastLanguageModel}
+     *
+     * @param file
+     *     the model file
+     * @return the provider
+     */
+    static LanguageModelProvider fast(File file) {
+        return () -> FastLanguageModel.read(file);
+    }
+
+    /**
+     * a model in a file, in the format of {@link FastLanguageModel} if its
+     * name ends in {@link FastLanguageModel#EXTENSION}, else in OpenNLP
+     * format
+     *
+     * @param file
+     *     the model file
+     * @return the provider
+     */
+    static LanguageModelProvider forFile(File file) {
+        return file.getName().endsWith(FastLanguageModel.EXTENSION)
+                ? fast(file)
+                : file(file);
+    }
+
+}
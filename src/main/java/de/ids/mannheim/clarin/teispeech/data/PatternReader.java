@@ -4,9 +4,14 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.regex.Pattern;
 
 import org.jdom2.Content;
@@ -14,8 +19,7 @@ import org.jdom2.Document;
 import org.jdom2.Element;
 import org.jdom2.JDOMException;
 import org.jdom2.Text;
-import org.jdom2.filter.Filters;
-import org.jdom2.xpath.XPathFactory;
+import org.jdom2.filter.ElementFilter;
 import org.korpora.useful.XMLUtilities;
 
 /* Big change 04-12-2012
@@ -30,7 +34,22 @@ import org.korpora.useful.XMLUtilities;
 public class PatternReader {
 
     private final Document document;
-    private static final XPathFactory xpf = XPathFactory.instance();
+
+    /**
+     * the &lt;pattern&gt;s of each &lt;level&gt; element, by name; the first
+     * pattern of a name wins, as in reference resolution
+     */
+    private final Map<Element, Map<String, Element>> patternsByLevel = new HashMap<>();
+
+    /**
+     * the &lt;pattern&gt;s for each level number, in document order
+     */
+    private final Map<String, List<Element>> patternsForLevel = new HashMap<>();
+
+    /**
+     * resolved regular expressions: language code → pattern element → regex
+     */
+    private final Map<String, Map<Element, String>> resolved = new ConcurrentHashMap<>();
 
     /**
      * read Patterns from file
@@ -43,7 +62,7 @@ public class PatternReader {
      *             file broken
      */
     public PatternReader(File input) throws JDOMException, IOException {
-        document = XMLUtilities.parseXMLviaJDOM(new FileInputStream(input));
+        this(new FileInputStream(input));
     }
 
     /**
@@ -58,6 +77,20 @@ public class PatternReader {
      */
     public PatternReader(InputStream input) throws JDOMException, IOException {
         document = XMLUtilities.parseXMLviaJDOM(input);
+        for (Element level : document
+                .getDescendants(new ElementFilter("level"))) {
+            Map<String, Element> byName = new HashMap<>();
+            List<Element> inOrder = patternsForLevel.computeIfAbsent(
+                    level.getAttributeValue("level"), l -> new ArrayList<>());
+            for (Element pattern : level
+                    .getDescendants(new ElementFilter("pattern"))) {
+                byName.putIfAbsent(pattern.getAttributeValue("name"), pattern);
+                if (pattern.getParentElement() == level) {
+                    inOrder.add(pattern);
+                }
+            }
+            patternsByLevel.put(level, byName);
+        }
     }
 
     /**
@@ -83,27 +116,49 @@ public class PatternReader {
      */
     public Map<String, Pattern> getAllPatterns(int level, String languageCode) {
         Map<String, Pattern> result = new HashMap<>();
-        String xp = "//level[@level='" + level + "']/pattern";
-        for (Element e : xpf.compile(xp, Filters.element())
-                .evaluate(document)) {
-            String name = e.getAttributeValue("name");
-            String pattern = resolveElement(e.getChild("regex"), languageCode);
-            if (!("default".equals(languageCode))) {
-                String xpath = "descendant::language[@name='" + languageCode
-                        + "']/regex";
-                Element regexChildOfThisLanguage = xpf
-                        .compile(xpath, Filters.element()).evaluateFirst(e);
-                if (regexChildOfThisLanguage != null) {
-                    pattern = resolveElement(regexChildOfThisLanguage,
-                            languageCode);
-                }
-            }
-            result.put(name,
-                    Pattern.compile(pattern, Pattern.CASE_INSENSITIVE));
+        getAllRegexes(level, languageCode).forEach((name, pattern) -> result
+                .put(name, Pattern.compile(pattern, Pattern.CASE_INSENSITIVE)));
+        return result;
+    }
+
+    /**
+     * get all regular expressions for a level, with references resolved
+     *
+     * @param level
+     *            the level
+     * @param languageCode
+     *            the language code
+     * @return the regular expressions as a Map: name → regex
+     */
+    public Map<String, String> getAllRegexes(int level, String languageCode) {
+        Map<String, String> result = new LinkedHashMap<>();
+        for (Element e : patternsForLevel.getOrDefault(String.valueOf(level),
+                new ArrayList<>())) {
+            result.put(e.getAttributeValue("name"),
+                    resolvePattern(e, languageCode));
         }
         return result;
     }
 
+    /**
+     * get the language variants defined for a level
+     *
+     * @param level
+     *            the level
+     * @return the language codes used in &lt;language&gt; elements
+     */
+    public Set<String> getLanguages(int level) {
+        Set<String> languages = new LinkedHashSet<>();
+        for (Element e : patternsForLevel.getOrDefault(String.valueOf(level),
+                new ArrayList<>())) {
+            for (Element lang : e
+                    .getDescendants(new ElementFilter("language"))) {
+                languages.add(lang.getAttributeValue("name"));
+            }
+        }
+        return languages;
+    }
+
     /**
      * get the Pattern by name for a specific level
      *
@@ -129,28 +184,14 @@ public class PatternReader {
      * @return the Pattern
      */
     private Pattern getPattern(int level, String name, String languageCode) {
-        String xp = "//level[@level='" + level
-                + "']/pattern[@name='" + name + "']";
-        System.out.println(xp);
-        Element e = xpf.compile(xp, Filters.element()).evaluateFirst(document);
-        Pattern pattern = Pattern.compile(
-                resolveElement(e.getChild("regex"), languageCode),
-                Pattern.CASE_INSENSITIVE);
-        if (!("default".equals(languageCode))) {
-            String xpath = "descendant::language[@name='" + languageCode
-                    + "']/regex";
-            System.out.println(xpath);
-            Element regexChildOfThisLanguage = xpf
-                    .compile(xpath, Filters.element()).evaluateFirst(e);
-            System.out.println("Null?");
-            if (regexChildOfThisLanguage != null) {
-                System.out.println("Not null");
-                pattern = Pattern.compile(
-                        resolveElement(regexChildOfThisLanguage, languageCode),
+        for (Element e : patternsForLevel.getOrDefault(String.valueOf(level),
+                new ArrayList<>())) {
+            if (name.equals(e.getAttributeValue("name"))) {
+                return Pattern.compile(resolvePattern(e, languageCode),
                         Pattern.CASE_INSENSITIVE);
             }
         }
-        return pattern;
+        return null;
     }
 
     /**
@@ -165,6 +206,52 @@ public class PatternReader {
         return resolveElement(e, "default");
     }
 
+    /**
+     * get the &lt;regex&gt; of a &lt;pattern&gt; for a language, falling back
+     * to the default
+     *
+     * @param pattern
+     *            the &lt;pattern&gt; element
+     * @param languageCode
+     *            a language code
+     * @return the &lt;regex&gt; element
+     */
+    private static Element regexFor(Element pattern, String languageCode) {
+        if (!("default".equals(languageCode))) {
+            for (Element lang : pattern
+                    .getDescendants(new ElementFilter("language"))) {
+                Element regex = lang.getChild("regex");
+                if (languageCode.equals(lang.getAttributeValue("name"))
+                        && regex != null) {
+                    return regex;
+                }
+            }
+        }
+        return pattern.getChild("regex");
+    }
+
+    /**
+     * resolve a &lt;pattern&gt; for a language; results are memoized, so
+     * shared sub-patterns are resolved only once
+     *
+     * @param pattern
+     *            the &lt;pattern&gt; element
+     * @param languageCode
+     *            a language code
+     * @return the resolved pattern
+     */
+    private String resolvePattern(Element pattern, String languageCode) {
+        Map<Element, String> forLanguage = resolved
+                .computeIfAbsent(languageCode, l -> new ConcurrentHashMap<>());
+        String regex = forLanguage.get(pattern);
+        if (regex == null) {
+            regex = resolveElement(regexFor(pattern, languageCode),
+                    languageCode);
+            forLanguage.put(pattern, regex);
+        }
+        return regex;
+    }
+
     /**
      * resolve links to other patterns within element content
      *
@@ -175,33 +262,22 @@ public class PatternReader {
      * @return the resolved pattern
      */
     private String resolveElement(Element e, String languageCode) {
+        Element level = e;
+        while (level != null && !"level".equals(level.getName())) {
+            level = level.getParentElement();
+        }
+        Map<String, Element> levelPatterns = patternsByLevel.get(level);
         StringBuilder result = new StringBuilder();
         List<Content> l = e.getContent();
         for (Object o : l) {
             // System.out.println(o.toString());
             if (o instanceof Text) {
                 result.append(((Text) o).getText());
-            } else {
+            } else if (o instanceof Element) {
                 Element patternRef = ((Element) o);
                 String refName = patternRef.getAttributeValue("ref");
-                // System.out.println("---" + refName);
-                String xp2 = "ancestor::level/descendant::pattern[@name='"
-                        + refName + "']";
-                // System.out.println("+++" + xp2);
-                Element refEl = xpf.compile(xp2, Filters.element())
-                        .evaluateFirst(patternRef);
-                Element theRightRegexElement = refEl.getChild("regex");
-                if (!("default".equals(languageCode))) {
-                    String xpath = "descendant::language[@name='" + languageCode
-                            + "']/regex";
-                    Element regexChildOfThisLanguage = xpf
-                            .compile(xpath, Filters.element())
-                            .evaluateFirst(refEl);
-                    if (regexChildOfThisLanguage != null) {
-                        theRightRegexElement = regexChildOfThisLanguage;
-                    }
-                }
-                result.append(resolveElement(theRightRegexElement, languageCode));
+                Element refEl = levelPatterns.get(refName);
+                result.append(resolvePattern(refEl, languageCode));
             }
         }
         return result.toString();
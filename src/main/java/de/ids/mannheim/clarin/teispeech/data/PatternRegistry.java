@@ -0,0 +1,150 @@
+package de.ids.mannheim.clarin.teispeech.data;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+
+import org.jdom2.JDOMException;
+
+import de.ids.mannheim.clarin.teispeech.utilities.DFAPattern;
+
+/**
+ * process-wide registry of the compiled cGAT patterns from
+ * {@code Patterns.xml}
+ *
+ * <p>
+ * Every (level, language) pattern set is resolved and compiled only once and
+ * then shared, as {@link Pattern}s are immutable and thread-safe. Language
+ * codes are mapped to the language variants defined for the level; codes
+ * without a variant share the default patterns.
+ *
+ * @author bfi
+ */
+public final class PatternRegistry {
+
+    private static final String PATTERNS_FILE_PATH = "Patterns.xml";
+
+    /**
+     * bibliographic and terminological ISO 639-2 codes, as both are used in
+     * {@code Patterns.xml}
+     */
+    private static final Map<String, String> ALIASES = new HashMap<>();
+    static {
+        String[][] pairs = { { "deu", "ger" }, { "fra", "fre" },
+                { "ces", "cze" } };
+        for (String[] pair : pairs) {
+            ALIASES.put(pair[0], pair[1]);
+            ALIASES.put(pair[1], pair[0]);
+        }
+    }
+
+    private static PatternRegistry instance;
+
+    private final PatternReader reader;
+
+    /**
+     * the compiled pattern sets, by level and language variant
+     */
+    private final Map<String, Map<String, Pattern>> patternSets = new ConcurrentHashMap<>();
+
+    /**
+     * the patterns compiled to automata, by pattern; patterns are compared by
+     * identity
+     */
+    private final Map<Pattern, DFAPattern> automata = new ConcurrentHashMap<>();
+
+    /**
+     * the language variants, by level
+     */
+    private final Map<Integer, Set<String>> variants = new ConcurrentHashMap<>();
+
+    /**
+     * make a registry for the patterns of a {@link PatternReader}
+     *
+     * @param reader
+     *     the pattern reader
+     */
+    public PatternRegistry(PatternReader reader) {
+        this.reader = reader;
+    }
+
+    /**
+     * get the shared registry for the patterns included in the JAR
+     *
+     * @return the registry
+     * @throws JDOMException
+     *     pattern file broken
+     * @throws IOException
+     *     pattern file unavailable
+     */
+    public static synchronized PatternRegistry getInstance()
+            throws JDOMException, IOException {
+        if (instance == null) {
+            try (InputStream patterns = PatternRegistry.class
+                    .getClassLoader().getResourceAsStream(PATTERNS_FILE_PATH)) {
+                instance = new PatternRegistry(
+                        new PatternReader(Objects.requireNonNull(patterns)));
+            }
+        }
+        return instance;
+    }
+
+    /**
+     * find the language variant of a level corresponding to a language code
+     *
+     * @param level
+     *     the level
+     * @param languageCode
+     *     the language code
+     * @return the variant name, or "default" if there is none
+     */
+    public String getVariant(int level, String languageCode) {
+        if (languageCode == null) {
+            return "default";
+        }
+        Set<String> defined = variants.computeIfAbsent(level,
+                reader::getLanguages);
+        if (defined.contains(languageCode)) {
+            return languageCode;
+        }
+        String alias = ALIASES.get(languageCode);
+        if (alias != null && defined.contains(alias)) {
+            return alias;
+        }
+        return "default";
+    }
+
+    /**
+     * get all Patterns for a level and language
+     *
+     * @param level
+     *     the level
+     * @param languageCode
+     *     the language code
+     * @return the patterns as an unmodifiable Map: name → Pattern
+     */
+    public Map<String, Pattern> getPatterns(int level, String languageCode) {
+        String variant = getVariant(level, languageCode);
+        return patternSets.computeIfAbsent(level + "\t" + variant,
+                k -> Collections.unmodifiableMap(
+                        reader.getAllPatterns(level, variant)));
+    }
+
+    /**
+     * get a pattern from this registry compiled to automata
+     *
+     * @param pattern
+     *     the pattern, as returned by {@link #getPatterns(int, String)}
+     * @return the shared compiled pattern
+     */
+    public DFAPattern getAutomaton(Pattern pattern) {
+        return automata.computeIfAbsent(pattern, DFAPattern::compile);
+    }
+
+}
@@ -0,0 +1,111 @@
+package de.ids.mannheim.clarin.teispeech.data;
+
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import com.ibm.icu.lang.UScript;
+import com.ibm.icu.util.ULocale;
+
+/**
+ * assign languages to texts by their Unicode scripts: a text written only in
+ * scripts used by exactly one of the expected languages is in that language,
+ * e.g. a Cyrillic text if Russian is the only expected language written in
+ * Cyrillic.
+ *
+ * @author bfi
+ *
+ */
+class ScriptClassifier {
+
+    /**
+     * the expected languages using a script, by script code
+     */
+    private final Map<Integer, Set<String>> languagesByScript = new HashMap<>();
+
+    /**
+     * make a classifier
+     *
+     * @param expected
+     *     the expected languages; languages whose scripts are unknown to ICU
+     *     are never assigned
+     */
+    ScriptClassifier(Set<String> expected) {
+        for (String language : expected) {
+            int[] scripts = UScript.getCode(new ULocale(language));
+            if (scripts == null) {
+                continue;
+            }
+            for (int script : scripts) {
+                languagesByScript
+                        .computeIfAbsent(script, s -> new HashSet<>())
+                        .add(language);
+            }
+        }
+    }
+
+    /**
+     * assign a language to a text by its scripts; characters common to
+     * scripts, such as digits, punctuation and spaces, are ignored
+     *
+     * @param text
+     *     the text
+     * @return the language, or {@code null} if the scripts do not determine
+     *     exactly one expected language
+     */
+    String classify(CharSequence text) {
+        BitSet scripts = scripts(text);
+        if (scripts.isEmpty()) {
+            return null;
+        }
+        // languages using all scripts of the text:
+        Set<String> candidates = null;
+        for (int script = scripts.nextSetBit(0); script >= 0; script = scripts
+                .nextSetBit(script + 1)) {
+            Set<String> languages = languagesByScript.get(script);
+            if (languages == null) {
+                return null;
+            }
+            if (candidates == null) {
+                candidates = new HashSet<>(languages);
+            } else {
+                candidates.retainAll(languages);
+            }
+        }
+        return candidates.size() == 1 ? candidates.iterator().next() : null;
+    }
+
+    /**
+     * the names of the scripts of a text, for reporting
+     *
+     * @param text
+     *     the text
+     * @return the names, separated by commas
+     */
+    static String scriptNames(CharSequence text) {
+        return scripts(text).stream().mapToObj(UScript::getName)
+                .collect(Collectors.joining(", "));
+    }
+
+    /**
+     * @return the codes of the scripts of a text, except for common and
+     *     inherited characters
+     */
+    private static BitSet scripts(CharSequence text) {
+        BitSet scripts = new BitSet();
+        for (int i = 0; i < text.length();) {
+            int c = Character.codePointAt(text, i);
+            i += Character.charCount(c);
+            int script = UScript.getScript(c);
+            if (script != UScript.COMMON && script != UScript.INHERITED
+                    && script != UScript.UNKNOWN) {
+                scripts.set(script);
+            }
+        }
+        return scripts;
+    }
+
+}
@@ -0,0 +1,85 @@
+package de.ids.mannheim.clarin.teispeech.data;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * the running language distribution of a speaker, over the last clearly
+ * predicted utterances.
+ *
+ * <p>
+ * Most speakers stick to one language most of the time. Once the history of
+ * a speaker is settled on one language, only every {@link #SAMPLING}th
+ * utterance needs to be predicted to confirm it; a deviating prediction
+ * unsettles the prior until the language is predicted again.
+ *
+ * @author bfi
+ *
+ */
+class SpeakerPrior {
+
+    /**
+     * the number of predictions the distribution is based on
+     */
+    private static final int WINDOW = 20;
+
+    /**
+     * the minimal number of predictions for a settled prior
+     */
+    private static final int MIN_HISTORY = 5;
+
+    /**
+     * the minimal share of the majority language for a settled prior
+     */
+    private static final double MIN_SHARE = 0.9;
+
+    /**
+     * every how many utterances a settled prior is confirmed by prediction
+     */
+    static final int SAMPLING = 5;
+
+    private final Deque<String> history = new ArrayDeque<>();
+    private final Map<String, Integer> counts = new HashMap<>();
+    private String last;
+    private int sinceCheck;
+
+    /**
+     * add a clear prediction
+     *
+     * @param language
+     *     the predicted language
+     */
+    void observe(String language) {
+        history.addLast(language);
+        counts.merge(language, 1, Integer::sum);
+        if (history.size() > WINDOW) {
+            counts.merge(history.removeFirst(), -1, Integer::sum);
+        }
+        last = language;
+        sinceCheck = 0;
+    }
+
+    /**
+     * @return the language the speaker has settled on, or {@code null}
+     */
+    String settled() {
+        if (history.size() < MIN_HISTORY
+                || counts.get(last) < MIN_SHARE * history.size()) {
+            return null;
+        }
+        return last;
+    }
+
+    /**
+     * whether the next utterance of a settled speaker should be predicted
+     * nevertheless
+     *
+     * @return whether to predict
+     */
+    boolean sample() {
+        return ++sinceCheck >= SAMPLING;
+    }
+
+}
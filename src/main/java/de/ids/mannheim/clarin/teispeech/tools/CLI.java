@@ -7,6 +7,9 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.concurrent.Callable;
 import java.util.stream.Stream;
 
@@ -28,17 +31,25 @@ import org.xml.sax.SAXException;
 
 import de.ids.mannheim.clarin.teispeech.data.DocUtilities;
 import de.ids.mannheim.clarin.teispeech.data.GATParser;
+import de.ids.mannheim.clarin.teispeech.data.FastLanguageModel;
 import de.ids.mannheim.clarin.teispeech.data.LanguageDetect;
+import de.ids.mannheim.clarin.teispeech.data.LanguageModelProvider;
 import de.ids.mannheim.clarin.teispeech.data.NameSpaces;
 import de.ids.mannheim.clarin.teispeech.utilities.VersionProvider;
 import de.ids.mannheim.clarin.teispeech.workflow.DictionaryNormalizer;
 import de.ids.mannheim.clarin.teispeech.workflow.DocumentIdentifier;
 import de.ids.mannheim.clarin.teispeech.workflow.GenericParsing;
+import de.ids.mannheim.clarin.teispeech.workflow.NormalizerRegistry;
+import de.ids.mannheim.clarin.teispeech.workflow.BASG2PProvider;
+import de.ids.mannheim.clarin.teispeech.workflow.G2PCache;
+import de.ids.mannheim.clarin.teispeech.workflow.G2PRegistry;
+import de.ids.mannheim.clarin.teispeech.workflow.GermanG2PProvider;
 import de.ids.mannheim.clarin.teispeech.workflow.PseudoAlign;
 import de.ids.mannheim.clarin.teispeech.workflow.TEINormalizer;
 import de.ids.mannheim.clarin.teispeech.workflow.TEIPOS;
+import de.ids.mannheim.clarin.teispeech.workflow.TaggerRegistry;
+import de.ids.mannheim.clarin.teispeech.workflow.TreeTaggerPool;
 import de.ids.mannheim.clarin.teispeech.workflow.TextToTEIConversion;
-import de.ids.mannheim.clarin.teispeech.workflow.WordNormalizer;
 import picocli.CommandLine;
 import picocli.CommandLine.Command;
 import picocli.CommandLine.Model.CommandSpec;
@@ -104,11 +115,88 @@ public class CLI implements Callable<Integer> {
                     + "when normalizing; effectively, skip capitalized words")
     private boolean keepCase = false;
 
+    @SuppressWarnings("FieldCanBeLocal")
+    @Option(names = {
+            "--overrides" }, description = "project-specific normalizations "
+                    + "taking precedence over the dictionaries, as lines of "
+                    + "form and normalization separated by a tab "
+                    + "(normalize)")
+    private File overrides;
+
+    @SuppressWarnings("FieldCanBeLocal")
+    @Option(names = {
+            "--lexicon" }, description = "normalization lexicon for a "
+                    + "language, as LANGUAGE=FILE with lines of form and "
+                    + "normalization separated by a tab; repeatable "
+                    + "(normalize)")
+    private Map<String, File> lexicons = new LinkedHashMap<>();
+
+    @SuppressWarnings("FieldCanBeLocal")
+    @Option(names = {
+            "--fuzzy" }, description = "normalize unknown German words like "
+                    + "the most frequent FOLK form within an edit distance "
+                    + "of 1 (up to 5 letters) or 2 (normalize)")
+    private boolean fuzzy = false;
+
+    @SuppressWarnings("FieldCanBeLocal")
+    @Option(names = {
+            "--transducer" }, description = "hold the German dictionary "
+                    + "as a transducer, which needs much less memory; "
+                    + "not with --overrides or --fuzzy (normalize)")
+    private boolean transducer = false;
+
+    @SuppressWarnings("FieldCanBeLocal")
+    @Option(names = {
+            "--taggers" }, description = "JSON file selecting the tagger "
+                    + "and model per language, e.g. "
+                    + "{\"de\": {\"tagger\": \"opennlp\", \"model\": "
+                    + "\"de-pos.bin\"}}; other languages are tagged with "
+                    + "the TreeTagger (pos)")
+    private File taggerMapping;
+
     @Option(names = { "-L",
             "--level" }, description = "the level of the transcription "
                     + "(segmentize, default: '${DEFAULT-VALUE}')")
     private ProcessingLevel level = ProcessingLevel.generic;
 
+    @SuppressWarnings("FieldCanBeLocal")
+    @Option(names = { "-j",
+            "--threads" }, description = "number of threads for parsing "
+                    + "utterances (segmentize with cGAT levels) or "
+                    + "predicting their languages (guess); "
+                    + "default: ${DEFAULT-VALUE}")
+    private int threads = 1;
+
+    @SuppressWarnings("FieldCanBeLocal")
+    @Option(names = { "-a",
+            "--automata" }, description = "match cGAT patterns with "
+                    + "deterministic automata where possible (segmentize "
+                    + "with cGAT levels)")
+    private boolean automata = false;
+
+    @SuppressWarnings("FieldCanBeLocal")
+    @Option(names = { "-S",
+            "--by-script" }, description = "assign the language of "
+                    + "utterances written in a script that only one expected "
+                    + "language uses without prediction (guess)")
+    private boolean byScript = false;
+
+    @SuppressWarnings("FieldCanBeLocal")
+    @Option(names = { "-P",
+            "--speaker-prior" }, description = "keep a language "
+                    + "distribution per speaker to predict only now and then "
+                    + "for speakers settled on one language, and to assign "
+                    + "it to utterances with too few words (guess)")
+    private boolean speakerPrior = false;
+
+    @SuppressWarnings("FieldCanBeLocal")
+    @Option(names = {
+            "--language-model" }, description = "the language detection "
+                    + "model, in OpenNLP format or, if the file name ends in "
+                    + FastLanguageModel.EXTENSION + ", in fast-load format "
+                    + "(guess; default: built-in)")
+    private File languageModel;
+
     @SuppressWarnings("FieldCanBeLocal")
     @Option(names = { "-m", "--minimal",
             "--minimal-length" }, description = "the `minimal count` of words so "
@@ -130,6 +218,31 @@ public class CLI implements Callable<Integer> {
                     + "if not --use-graphs)")
     private boolean transcribe = false;
 
+    @SuppressWarnings("FieldCanBeLocal")
+    @Option(names = {
+            "--g2p" }, description = "grapheme-to-phoneme providers for a "
+                    + "language, tried in order, e.g. deu=local,letters, or "
+                    + "for all other languages, e.g. default=letters; of "
+                    + "bas (web service), local (German rules and lexicon) "
+                    + "and letters; repeatable (alignment, default: "
+                    + "default=bas,local,letters)")
+    private Map<String, String> g2pProviders = new LinkedHashMap<>();
+
+    @SuppressWarnings("FieldCanBeLocal")
+    @Option(names = {
+            "--g2p-lexicon" }, description = "file with German words and "
+                    + "their transcriptions, separated by a tab, for the "
+                    + "local provider (alignment)")
+    private File g2pLexicon;
+
+    @SuppressWarnings("FieldCanBeLocal")
+    @Option(names = {
+            "--g2p-cache" }, description = "file keeping the transcriptions "
+                    + "of the BAS web service, which may be shared by "
+                    + "concurrent runs; only words not in it are sent to "
+                    + "the service (alignment)")
+    private File g2pCache;
+
     @SuppressWarnings("FieldCanBeLocal")
     @Option(names = { "-T", "--time" }, description = "audio length in seconds"
             + "(alignment, taken from document if -1, default: ${DEFAULT-VALUE})")
@@ -265,7 +378,11 @@ public class CLI implements Callable<Integer> {
     private void pos() {
         try {
             Document doc = builder.parse(inputStream);
-            TEIPOS teipo = new TEIPOS(doc, language);
+            TaggerRegistry taggers = new TaggerRegistry();
+            if (taggerMapping != null) {
+                taggers.read(taggerMapping, TreeTaggerPool.getShared());
+            }
+            TEIPOS teipo = new TEIPOS(doc, language, taggers);
             teipo.posTag(force);
             XMLUtilities.outputXML(outStream, doc, indent);
         } catch (IOException | SAXException e) {
@@ -278,14 +395,33 @@ public class CLI implements Callable<Integer> {
      * normalize an ISO transcription
      */
     private void normalize() {
-        WordNormalizer wn = new DictionaryNormalizer(keepCase, true);
-        TEINormalizer tn = new TEINormalizer(wn, language);
+        NormalizerRegistry registry = new NormalizerRegistry(keepCase);
+        if (transducer) {
+            if (overrides != null || fuzzy) {
+                throw new ParameterException(spec.commandLine(),
+                        "--transducer cannot be combined with --overrides "
+                                + "or --fuzzy!");
+            }
+            registry.registerTransducer();
+        } else {
+            registry.register("deu", () -> {
+                DictionaryNormalizer normalizer = new DictionaryNormalizer(
+                        keepCase, true, overrides);
+                normalizer.setFuzzy(fuzzy);
+                return normalizer;
+            });
+        }
+        lexicons.forEach((lang, file) -> registry
+                .registerLexicon(checkLanguage(lang), file));
+        TEINormalizer tn = new TEINormalizer(registry, language);
         try {
             Document doc = builder.parse(inputStream);
             System.err.format("Have got %d <w> nodes.\n",
                     doc.getElementsByTagNameNS(NameSpaces.TEI_NS, "w")
                             .getLength());
             tn.normalize(doc, force);
+            registry.getLoadInfos().forEach((lang, info) -> System.err
+                    .format("Normalizer for %s: %s.\n", lang, info));
             XMLUtilities.outputXML(outStream, doc, indent);
         } catch (IOException | SAXException e) {
             throw new RuntimeException(e);
@@ -299,8 +435,14 @@ public class CLI implements Callable<Integer> {
     private void guess() {
         try {
             Document doc = builder.parse(inputStream);
+            if (languageModel != null) {
+                LanguageDetect.setModelProvider(
+                        LanguageModelProvider.forFile(languageModel));
+            }
             LanguageDetect ld = new LanguageDetect(doc, language, expected,
-                    minimalLength);
+                    minimalLength, threads);
+            ld.setByScript(byScript);
+            ld.setSpeakerPrior(speakerPrior);
             ld.detect(force);
             XMLUtilities.outputXML(outStream, doc, indent);
         } catch (IOException | SAXException e) {
@@ -325,7 +467,8 @@ public class CLI implements Callable<Integer> {
             try {
                 org.jdom2.Document doc = XMLUtilities
                         .parseXMLviaJDOM(inputStream);
-                GATParser parser = new GATParser();
+                GATParser parser = new GATParser("universal", threads,
+                        automata);
                 parser.parseDocument(doc, level.ordinal() + 1);
                 DocUtilities.makeChange(doc, String.format(
                         "utterances parsed to %s conventions", level.name()));
@@ -349,8 +492,17 @@ public class CLI implements Callable<Integer> {
         try {
             boolean usePhones = !useGraphs;
             Document doc = builder.parse(inputStream);
+            G2PRegistry g2p = new G2PRegistry();
+            if (g2pCache != null) {
+                g2p.register(new BASG2PProvider(G2PCache.forFile(g2pCache)));
+            }
+            if (g2pLexicon != null) {
+                g2p.register(new GermanG2PProvider(g2pLexicon));
+            }
+            g2pProviders.forEach((lang, names) -> g2p.setProviders(lang,
+                    Arrays.asList(names.split(","))));
             PseudoAlign aligner = new PseudoAlign(doc, language, usePhones,
-                    transcribe, force, timeLength, offset, every);
+                    transcribe, force, timeLength, offset, every, g2p);
             aligner.calculateUtterances();
             XMLUtilities.outputXML(outStream, aligner.getDoc(), indent);
         } catch (IOException | SAXException e) {
@@ -4,7 +4,7 @@ import de.ids.mannheim.clarin.teispeech.workflow.DictionaryNormalizer;
 
 /**
  * compile a dictionary from the FOLK and DeReKo dictionaries referenced in
- * {@link DictionaryNormalizer}
+ * {@link DictionaryNormalizer}, as TSV and in binary format
  *
  * @author bfi
  *
@@ -14,5 +14,6 @@ class DictMaker {
     public static void main(String[] args) {
         DictionaryNormalizer.loadDictionary(true);
         DictionaryNormalizer.writeDict();
+        DictionaryNormalizer.writeCompiledDict();
     }
 }
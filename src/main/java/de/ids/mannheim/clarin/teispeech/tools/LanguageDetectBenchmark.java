@@ -0,0 +1,186 @@
+package de.ids.mannheim.clarin.teispeech.tools;
+
+import de.ids.mannheim.clarin.teispeech.data.ExpectedLanguageModel;
+import de.ids.mannheim.clarin.teispeech.data.LanguageDetect;
+import de.ids.mannheim.clarin.teispeech.utilities.VersionProvider;
+import opennlp.tools.langdetect.Language;
+import opennlp.tools.langdetect.LanguageDetector;
+import opennlp.tools.langdetect.LanguageDetectorContextGenerator;
+import opennlp.tools.langdetect.LanguageDetectorME;
+import opennlp.tools.langdetect.LanguageDetectorModel;
+import org.korpora.useful.LangUtilities;
+import picocli.CommandLine;
+import picocli.CommandLine.Command;
+import picocli.CommandLine.Option;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * CLI to compare predicting all languages and keeping the expected ones with
+ * scoring only the expected languages, see {@link ExpectedLanguageModel}
+ *
+ * @author bfi
+ *
+ */
+@SuppressWarnings("FieldCanBeLocal")
+@Command(description = "benchmark language detection restricted to expected languages", name = "languagebenchmark", mixinStandardHelpOptions = true, versionProvider = VersionProvider.class)
+class LanguageDetectBenchmark implements Runnable {
+    /**
+     * @param args
+     *            the command line arguments ;-).
+     */
+    public static void main(String[] args) {
+        CommandLine.run(new LanguageDetectBenchmark(), args);
+    }
+
+    /**
+     * utterances, to be used if there is no input file
+     */
+    private static final List<String> SAMPLES = Arrays.asList(
+            "ja also ich weiß nicht ob das so stimmt",
+            "I don't know what you mean by that",
+            "ben de bilmiyorum ne oldu",
+            "und dann hat er gesagt dass er morgen nicht kommt",
+            "okay yeah that's what I said",
+            "evet evet tamam öyle yapalım");
+
+    @Option(names = { "-i",
+            "--input" }, description = "file with one utterance per line "
+                    + "(default: built-in samples)")
+    private File inputFile;
+    @Option(names = { "-l",
+            "--language" }, description = "the document language (default: ${DEFAULT-VALUE})")
+    private String language = "deu";
+    @Option(names = { "-E", "--expected" }, description = "comma-separated "
+            + "list of expected languages besides the main language "
+            + "(default: '${DEFAULT-VALUE}')", defaultValue = "eng,tur", split = ",")
+    private String[] expected;
+    @Option(names = { "-n",
+            "--repeat" }, description = "how often utterances are "
+                    + "predicted per round (default: ${DEFAULT-VALUE})")
+    private int repeat = 100;
+    @Option(names = { "-r",
+            "--rounds" }, description = "rounds per measurement; "
+                    + "the fastest counts (default: ${DEFAULT-VALUE})")
+    private int rounds = 10;
+
+    @Override
+    public void run() {
+        try {
+            List<String> utterances = inputFile == null ? SAMPLES
+                    : Files.readAllLines(inputFile.toPath(),
+                            StandardCharsets.UTF_8);
+            Set<String> expectedLanguages = new HashSet<>(
+                    Arrays.asList(expected));
+            expectedLanguages.add(language);
+            LanguageDetectorModel model = LanguageDetect.getModel();
+            LanguageDetector detector = new LanguageDetectorME(model);
+            LanguageDetectorContextGenerator contextGenerator = model
+                    .getFactory().getContextGenerator();
+            long start = System.nanoTime();
+            ExpectedLanguageModel expectedModel = ExpectedLanguageModel
+                    .get(model, expectedLanguages);
+            if (expectedModel == null) {
+                System.out.format("%s models cannot be restricted%n",
+                        model.getMaxentModel().getClass().getSimpleName());
+                return;
+            }
+            System.out.format("restricting to %d of %d languages: %.2f ms%n",
+                    expectedModel.size(),
+                    model.getMaxentModel().getNumOutcomes(),
+                    (System.nanoTime() - start) / 1e6);
+
+            // compare results, renormalizing the full prediction:
+            int sameBest = 0;
+            double maxDifference = 0;
+            for (String utterance : utterances) {
+                List<Language> full = full(detector, expectedLanguages,
+                        utterance);
+                Language[] restricted = expectedModel.predictLanguages(
+                        contextGenerator.getContext(utterance));
+                double sum = full.stream().mapToDouble(Language::getConfidence)
+                        .sum();
+                if (!full.isEmpty() && restricted.length > 0 && full.get(0)
+                        .getLang().equals(restricted[0].getLang())) {
+                    sameBest++;
+                }
+                for (Language f : full) {
+                    for (Language r : restricted) {
+                        if (f.getLang().equals(r.getLang())) {
+                            maxDifference = Math.max(maxDifference, Math.abs(
+                                    f.getConfidence() / sum - r.getConfidence()));
+                        }
+                    }
+                }
+            }
+            System.out.format(
+                    "same best language: %d of %d; "
+                            + "maximal difference of confidences: %.2g%n",
+                    sameBest, utterances.size(), maxDifference);
+
+            double fullTime = time(() -> {
+                for (String utterance : utterances) {
+                    full(detector, expectedLanguages, utterance);
+                }
+            });
+            double restrictedTime = time(() -> {
+                for (String utterance : utterances) {
+                    expectedModel.predictLanguages(
+                            contextGenerator.getContext(utterance));
+                }
+            });
+            double contextTime = time(() -> {
+                for (String utterance : utterances) {
+                    contextGenerator.getContext(utterance);
+                }
+            });
+            int predictions = utterances.size() * repeat;
+            System.out.format("%-12s %14s %14s%n", "scoring", "total [ms]",
+                    "per utt. [µs]");
+            System.out.format("%-12s %14.2f %14.2f%n", "all", fullTime,
+                    fullTime * 1000 / predictions);
+            System.out.format("%-12s %14.2f %14.2f%n", "expected",
+                    restrictedTime, restrictedTime * 1000 / predictions);
+            System.out.format("%-12s %14.2f %14.2f%n", "(features)",
+                    contextTime, contextTime * 1000 / predictions);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * the current prediction: all languages, keeping the expected ones
+     */
+    private static List<Language> full(LanguageDetector detector,
+            Set<String> expectedLanguages, String utterance) {
+        return Stream.of(detector.predictLanguages(utterance))
+                .filter(l -> expectedLanguages.contains(
+                        LangUtilities.getLanguageString(l.getLang())))
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * @return the fastest time in ms for {@link #repeat} runs
+     */
+    private double time(Runnable task) {
+        double best = Double.MAX_VALUE;
+        for (int r = 0; r < rounds; r++) {
+            long start = System.nanoTime();
+            for (int i = 0; i < repeat; i++) {
+                task.run();
+            }
+            best = Math.min(best, (System.nanoTime() - start) / 1e6);
+        }
+        return best;
+    }
+
+}
@@ -0,0 +1,68 @@
+package de.ids.mannheim.clarin.teispeech.tools;
+
+import de.ids.mannheim.clarin.teispeech.data.FastLanguageModel;
+import de.ids.mannheim.clarin.teispeech.data.LanguageDetect;
+import de.ids.mannheim.clarin.teispeech.data.LanguageModelProvider;
+import de.ids.mannheim.clarin.teispeech.utilities.VersionProvider;
+import opennlp.tools.langdetect.LanguageDetectorModel;
+import picocli.CommandLine;
+import picocli.CommandLine.Command;
+import picocli.CommandLine.Option;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * convert a language detection model from OpenNLP format to the fast-load
+ * format of {@link FastLanguageModel}, and compare their load times
+ *
+ * @author bfi
+ *
+ */
+@SuppressWarnings("FieldCanBeLocal")
+@Command(description = "convert a language detection model to fast-load format", name = "languagemodelcompiler", mixinStandardHelpOptions = true, versionProvider = VersionProvider.class)
+class LanguageModelCompiler implements Runnable {
+    /**
+     * @param args
+     *            the command line arguments ;-).
+     */
+    public static void main(String[] args) {
+        CommandLine.run(new LanguageModelCompiler(), args);
+    }
+
+    @Option(names = { "-i",
+            "--input" }, description = "model in OpenNLP format "
+                    + "(default: the built-in model)")
+    private File inputFile;
+    @Option(names = { "-o",
+            "--output" }, description = "the output file, by convention "
+                    + "ending in " + FastLanguageModel.EXTENSION, required = true)
+    private File outputFile;
+
+    @Override
+    public void run() {
+        try {
+            long start = System.nanoTime();
+            LanguageDetectorModel model = inputFile == null
+                    ? LanguageDetect.getModel()
+                    : LanguageModelProvider.file(inputFile).load();
+            double openNLPTime = (System.nanoTime() - start) / 1e6;
+            try {
+                FastLanguageModel.write(model, outputFile);
+            } catch (IllegalArgumentException e) {
+                System.err.println(e.getMessage());
+                return;
+            }
+            start = System.nanoTime();
+            LanguageModelProvider.fast(outputFile).load();
+            double fastTime = (System.nanoTime() - start) / 1e6;
+            System.out.format("wrote %s (%d bytes)%n", outputFile,
+                    outputFile.length());
+            System.out.format("load time: OpenNLP format %.2f ms, "
+                    + "fast-load format %.2f ms%n", openNLPTime, fastTime);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+}
@@ -0,0 +1,156 @@
+package de.ids.mannheim.clarin.teispeech.tools;
+
+import de.ids.mannheim.clarin.teispeech.utilities.VersionProvider;
+import de.ids.mannheim.clarin.teispeech.workflow.DictionaryNormalizer;
+import de.ids.mannheim.clarin.teispeech.workflow.LexiconTransducer;
+import de.ids.mannheim.clarin.teispeech.workflow.WordNormalizer;
+import picocli.CommandLine;
+import picocli.CommandLine.Command;
+import picocli.CommandLine.Option;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * CLI to compare the normalization dictionary as a hash map, as used by
+ * {@link DictionaryNormalizer} for the TSV dictionary, with the
+ * {@link LexiconTransducer}: heap, build time, lookup throughput
+ *
+ * @author bfi
+ *
+ */
+@SuppressWarnings("FieldCanBeLocal")
+@Command(description = "benchmark normalization dictionaries", name = "normalizerbenchmark", mixinStandardHelpOptions = true, versionProvider = VersionProvider.class)
+class NormalizerBenchmark implements Runnable {
+    /**
+     * @param args
+     *            the command line arguments ;-).
+     */
+    public static void main(String[] args) {
+        CommandLine.run(new NormalizerBenchmark(), args);
+    }
+
+    @Option(names = { "-i",
+            "--input" }, description = "file with one word per line "
+                    + "(default: the dictionary forms, and capitalized)")
+    private File inputFile;
+    @Option(names = { "-r",
+            "--rounds" }, description = "rounds per measurement; "
+                    + "the fastest counts (default: ${DEFAULT-VALUE})")
+    private int rounds = 5;
+
+    @Override
+    public void run() {
+        try {
+            Map<String, String> entries = new HashMap<>();
+            DictionaryNormalizer.forEachEntry(entries::put);
+            List<String> words = new ArrayList<>();
+            if (inputFile == null) {
+                entries.keySet().forEach(word -> {
+                    words.add(word);
+                    words.add(word.substring(0, 1).toUpperCase()
+                            + word.substring(1));
+                });
+            } else {
+                words.addAll(Files.readAllLines(inputFile.toPath(),
+                        StandardCharsets.UTF_8));
+            }
+            System.out.format("%d entries, %d words to look up%n",
+                    entries.size(), words.size());
+
+            Object[] map = new Object[1];
+            Object[] fst = new Object[1];
+            double[] mapStats = measure(() -> {
+                // copies of the strings, which the transducer does not keep:
+                Map<String, String> dict = new ConcurrentHashMap<>();
+                entries.forEach(
+                        (k, v) -> dict.put(new String(k), new String(v)));
+                map[0] = dict;
+                return dict;
+            });
+            double[] fstStats = measure(() -> {
+                LexiconTransducer transducer = LexiconTransducer
+                        .build(entries);
+                fst[0] = transducer;
+                return transducer;
+            });
+            @SuppressWarnings("unchecked")
+            Map<String, String> dict = (Map<String, String>) map[0];
+            LexiconTransducer transducer = (LexiconTransducer) fst[0];
+            System.out.format("transducer: %d states, %d arcs%n",
+                    transducer.stateCount(), transducer.arcCount());
+            WordNormalizer mapNormalizer = in -> dict
+                    .getOrDefault(in.toLowerCase(), in);
+            WordNormalizer fstNormalizer = in -> {
+                String normalised = transducer.get(in.toLowerCase());
+                return normalised != null ? normalised : in;
+            };
+            int differences = 0;
+            for (String word : words) {
+                if (!Objects.equals(mapNormalizer.getNormalised(word),
+                        fstNormalizer.getNormalised(word))) {
+                    differences++;
+                }
+            }
+            System.out.format("differences: %d%n", differences);
+            double mapTime = time(mapNormalizer, words);
+            double fstTime = time(fstNormalizer, words);
+            System.out.format("%-12s %12s %12s %14s%n", "dictionary",
+                    "heap [MB]", "build [ms]", "lookups [1/s]");
+            System.out.format("%-12s %12.1f %12.1f %14.0f%n", "hash map",
+                    mapStats[0], mapStats[1], words.size() / mapTime * 1000);
+            System.out.format("%-12s %12.1f %12.1f %14.0f%n", "transducer",
+                    fstStats[0], fstStats[1], words.size() / fstTime * 1000);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * build a dictionary from the entries
+     *
+     * @return retained heap in MB and build time in ms
+     */
+    private static double[] measure(Supplier<Object> build) {
+        long before = usedMemory();
+        long start = System.nanoTime();
+        Object dictionary = build.get();
+        double time = (System.nanoTime() - start) / 1e6;
+        long after = usedMemory();
+        Objects.requireNonNull(dictionary);
+        return new double[] { (after - before) / 1048576d, time };
+    }
+
+    private static long usedMemory() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    /**
+     * @return the fastest time in ms to normalize all words
+     */
+    private double time(WordNormalizer normalizer, List<String> words) {
+        double best = Double.MAX_VALUE;
+        for (int r = 0; r < rounds; r++) {
+            long start = System.nanoTime();
+            for (String word : words) {
+                normalizer.getNormalised(word);
+            }
+            best = Math.min(best, (System.nanoTime() - start) / 1e6);
+        }
+        return best;
+    }
+
+}
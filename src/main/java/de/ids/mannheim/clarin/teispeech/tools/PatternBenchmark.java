@@ -0,0 +1,184 @@
+package de.ids.mannheim.clarin.teispeech.tools;
+
+import de.ids.mannheim.clarin.teispeech.data.PatternRegistry;
+import de.ids.mannheim.clarin.teispeech.utilities.DFAPattern;
+import de.ids.mannheim.clarin.teispeech.utilities.VersionProvider;
+import org.jdom2.JDOMException;
+import picocli.CommandLine;
+import picocli.CommandLine.Command;
+import picocli.CommandLine.Model.CommandSpec;
+import picocli.CommandLine.Option;
+import picocli.CommandLine.ParameterException;
+import picocli.CommandLine.Spec;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * CLI to compare matching cGAT patterns with {@link java.util.regex} and with
+ * {@link DFAPattern} on long contributions, well-formed and malformed
+ *
+ * @author bfi
+ *
+ */
+@SuppressWarnings("FieldCanBeLocal")
+@Command(description = "benchmark matching cGAT patterns", name = "patternbenchmark", mixinStandardHelpOptions = true, versionProvider = VersionProvider.class)
+class PatternBenchmark implements Runnable {
+    /**
+     * @param args
+     *            the command line arguments ;-).
+     */
+    public static void main(String[] args) {
+        CommandLine.run(new PatternBenchmark(), args);
+    }
+
+    /**
+     * well-formed contributions by level, to be repeated
+     */
+    private static final String[] SAMPLES = { null, null,
+            "gut ((lacht)) (ich weiß/ich wüsste) hab (-) ja +++ das_s ",
+            "so (.) so nee ja:. das_s äh (ich weiß/ich wüsste) !WIRK!lich ja, " };
+
+    /**
+     * appended to make contributions malformed
+     */
+    private static final String MALFORMED = "((";
+
+    @Option(names = { "-i",
+            "--input" }, description = "file with one contribution per line "
+                    + "(default: a built-in sample)")
+    private File inputFile;
+    @Option(names = { "-l",
+            "--language" }, description = "the language variant of the patterns, "
+                    + "as used by the CLI (default: ${DEFAULT-VALUE})")
+    private String language = "universal";
+    @Option(names = { "-L",
+            "--level" }, description = "the parsing level (default: ${DEFAULT-VALUE})")
+    private int level = 2;
+    @Option(names = { "-n",
+            "--repeat" }, description = "how often contributions are "
+                    + "repeated to make long ones (default: ${DEFAULT-VALUE})")
+    private int repeat = 1000;
+    @Option(names = { "-r",
+            "--rounds" }, description = "rounds per measurement; "
+                    + "the fastest counts (default: ${DEFAULT-VALUE})")
+    private int rounds = 10;
+
+    @Spec
+    private CommandSpec spec; // injected by picocli
+
+    @Override
+    public void run() {
+        if (level != 2 && level != 3) {
+            throw new ParameterException(spec.commandLine(),
+                    "Level must be either 2 or 3");
+        }
+        try {
+            List<String> contributions = inputFile == null
+                    ? Collections.singletonList(SAMPLES[level])
+                    : Files.readAllLines(inputFile.toPath(),
+                            StandardCharsets.UTF_8);
+            PatternRegistry registry = PatternRegistry.getInstance();
+            Map<String, Pattern> patterns = registry.getPatterns(level,
+                    language);
+            Pattern contribution = patterns.get("GAT_CONTRIBUTION");
+            Pattern word = patterns.get("GAT_WORD");
+            DFAPattern contributionDFA = registry.getAutomaton(contribution);
+            DFAPattern wordDFA = registry.getAutomaton(word);
+            System.out.format(
+                    "GAT_CONTRIBUTION: automaton %s, exact %s; "
+                            + "GAT_WORD: automaton %s, exact %s%n",
+                    contributionDFA.isCompiled(), contributionDFA.isExact(),
+                    wordDFA.isCompiled(), wordDFA.isExact());
+            System.out.format("%-10s %8s %-8s %12s %12s%n", "input",
+                    "length", "task", "regex [ms]", "automata [ms]");
+            for (String line : contributions) {
+                StringBuilder text = new StringBuilder();
+                for (int i = 0; i < repeat; i++) {
+                    text.append(line);
+                }
+                String[] inputs = { text.toString(), text + MALFORMED };
+                String[] kinds = { "valid", "malformed" };
+                for (int k = 0; k < inputs.length; k++) {
+                    String input = inputs[k];
+                    String kind = kinds[k];
+                    compare(kind, input, "matches",
+                            t -> contribution.matcher(t).matches(),
+                            contributionDFA::matches);
+                    compare(kind, input, "find",
+                            t -> regexFindAll(word, t),
+                            t -> automataFindAll(wordDFA, t));
+                }
+            }
+        } catch (JDOMException | IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private void compare(String kind, String input, String task,
+            Function<String, Object> regex,
+            Function<String, Object> automata) {
+        Object[] results = new Object[2];
+        double regexTime = time(regex, input, results, 0);
+        double automataTime = time(automata, input, results, 1);
+        boolean differ = !Double.isNaN(regexTime)
+                && !Double.isNaN(automataTime)
+                && !results[0].equals(results[1]);
+        System.out.format("%-10s %8d %-8s %12s %12s%s%n", kind,
+                input.length(), task, format(regexTime),
+                format(automataTime), differ ? "  RESULTS DIFFER" : "");
+    }
+
+    /**
+     * @return the fastest time in ms, or NaN if matching overflows the stack
+     */
+    private double time(Function<String, Object> matcher, String input,
+            Object[] results, int index) {
+        double best = Double.MAX_VALUE;
+        try {
+            for (int r = 0; r < rounds; r++) {
+                long start = System.nanoTime();
+                results[index] = matcher.apply(input);
+                best = Math.min(best, (System.nanoTime() - start) / 1e6);
+            }
+        } catch (StackOverflowError e) {
+            return Double.NaN;
+        }
+        return best;
+    }
+
+    private static String format(double time) {
+        return Double.isNaN(time) ? "stack overflow"
+                : String.format("%.2f", time);
+    }
+
+    private static List<String> regexFindAll(Pattern pattern, String text) {
+        List<String> result = new ArrayList<>();
+        Matcher m = pattern.matcher(text);
+        while (m.find()) {
+            result.add(m.start() + "-" + m.end());
+        }
+        return result;
+    }
+
+    private static List<String> automataFindAll(DFAPattern pattern,
+            String text) {
+        List<String> result = new ArrayList<>();
+        int[] m = pattern.find(text, 0);
+        while (m != null) {
+            result.add(m[0] + "-" + m[1]);
+            m = pattern.find(text, m[1] > m[0] ? m[1] : m[1] + 1);
+        }
+        return result;
+    }
+
+}
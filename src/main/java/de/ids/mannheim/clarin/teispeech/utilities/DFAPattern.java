@@ -0,0 +1,734 @@
+package de.ids.mannheim.clarin.teispeech.utilities;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import de.ids.mannheim.clarin.teispeech.utilities.RegexTree.Alt;
+import de.ids.mannheim.clarin.teispeech.utilities.RegexTree.Assertion;
+import de.ids.mannheim.clarin.teispeech.utilities.RegexTree.Chars;
+import de.ids.mannheim.clarin.teispeech.utilities.RegexTree.Greed;
+import de.ids.mannheim.clarin.teispeech.utilities.RegexTree.Node;
+import de.ids.mannheim.clarin.teispeech.utilities.RegexTree.Repeat;
+import de.ids.mannheim.clarin.teispeech.utilities.RegexTree.Rewritten;
+import de.ids.mannheim.clarin.teispeech.utilities.RegexTree.Seq;
+import de.ids.mannheim.clarin.teispeech.utilities.RegexTree.Unsupported;
+
+/**
+ * a {@link Pattern} matched by deterministic automata, which take time
+ * linear in the length of the input
+ *
+ * <p>
+ * The automata are built lazily from the states reached while matching and
+ * can be shared between threads. Searching follows the leftmost-first
+ * semantics of {@link Matcher#find(int)}: the end of a match is found in one
+ * pass forward, its start in one pass backward.
+ *
+ * <p>
+ * Patterns using constructs beyond {@link RegexTree} are matched by
+ * {@link java.util.regex}. The same holds for possessive quantifiers that
+ * cannot be replaced by greedy ones: then an automaton without them rejects
+ * in linear time, and only its hits are checked by {@link java.util.regex}.
+ *
+ * @author bfi
+ */
+public final class DFAPattern {
+
+    private final static Logger LOGGER = LoggerFactory
+            .getLogger(DFAPattern.class.getName());
+
+    private static final int MAX_INSTRUCTIONS = 50000;
+    private static final int MAX_STATES = 10000;
+
+    /**
+     * returned by automata for input with surrogates: code units can only
+     * stand for characters of the Basic Multilingual Plane
+     */
+    private static final int UNDECIDED = -2;
+
+    private final Pattern pattern;
+
+    /**
+     * for {@link #matches(CharSequence)}; null if not supported
+     */
+    private final Automaton whole;
+    private final boolean wholeExact;
+
+    /**
+     * for {@link #find(CharSequence, int)}; null if not supported
+     */
+    private final Automaton forward;
+    private final Automaton backward;
+    private final boolean searchExact;
+
+    private DFAPattern(Pattern pattern, Automaton whole, boolean wholeExact,
+            Automaton forward, Automaton backward, boolean searchExact) {
+        this.pattern = pattern;
+        this.whole = whole;
+        this.wholeExact = wholeExact;
+        this.forward = forward;
+        this.backward = backward;
+        this.searchExact = searchExact;
+    }
+
+    /**
+     * compile a pattern to automata, if possible
+     *
+     * @param pattern
+     *     the pattern
+     * @return the compiled pattern, which falls back to
+     *     {@link java.util.regex}, with a warning, if the pattern is not
+     *     supported
+     */
+    public static DFAPattern compile(Pattern pattern) {
+        try {
+            Node tree = RegexTree.parse(pattern);
+            Rewritten whole = RegexTree.rewrite(tree, false);
+            Rewritten search = RegexTree.rewrite(tree, true);
+            Alphabet alphabet = new Alphabet();
+            Program wholeProgram = new Program(whole.tree, alphabet);
+            Program forwardProgram = new Program(search.tree, alphabet);
+            Program backwardProgram = new Program(
+                    RegexTree.reverse(search.tree), alphabet);
+            alphabet.freeze();
+            return new DFAPattern(pattern,
+                    new Automaton(wholeProgram, alphabet, Mode.WHOLE),
+                    whole.exact,
+                    new Automaton(forwardProgram, alphabet, Mode.FORWARD),
+                    new Automaton(backwardProgram, alphabet, Mode.BACKWARD),
+                    search.exact);
+        } catch (Unsupported e) {
+            LOGGER.warn("Matching with java.util.regex, as {} is not "
+                    + "supported by automata: {}", e.getMessage(),
+                    StringUtils.abbreviate(pattern.pattern(), 200));
+            return new DFAPattern(pattern, null, false, null, null, false);
+        }
+    }
+
+    /**
+     * @return the underlying pattern
+     */
+    public Pattern pattern() {
+        return pattern;
+    }
+
+    /**
+     * @return whether the pattern is matched by automata
+     */
+    public boolean isCompiled() {
+        return whole != null;
+    }
+
+    /**
+     * @return whether the automata decide without falling back to
+     *     {@link java.util.regex} for possessive quantifiers
+     */
+    public boolean isExact() {
+        return isCompiled() && wholeExact && searchExact;
+    }
+
+    /**
+     * like {@link Matcher#matches()}
+     *
+     * @param text
+     *     the input
+     * @return whether the whole input matches
+     */
+    public boolean matches(CharSequence text) {
+        int matches = whole == null ? UNDECIDED : whole.matches(text);
+        if (matches == UNDECIDED || matches == 1 && !wholeExact) {
+            return pattern.matcher(text).matches();
+        }
+        return matches == 1;
+    }
+
+    /**
+     * like {@link Matcher#find(int)}
+     *
+     * <p>
+     * To find successive matches like {@link Matcher#find()}, continue at
+     * the end of the last match, or after it if it was empty.
+     *
+     * @param text
+     *     the input
+     * @param from
+     *     where to start searching
+     * @return start and end of the first match, or null if there is none
+     */
+    public int[] find(CharSequence text, int from) {
+        if (from > text.length()) {
+            return null;
+        }
+        int end = forward == null ? UNDECIDED : forward.search(text, from);
+        if (end == UNDECIDED) {
+            return regexFind(text, from);
+        } else if (end < 0) {
+            return null;
+        }
+        int start = backward.searchBack(text, from, end);
+        if (!searchExact) {
+            // no match with possessive quantifiers starts earlier
+            return regexFind(text, start);
+        }
+        return new int[] { start, end };
+    }
+
+    private int[] regexFind(CharSequence text, int from) {
+        Matcher m = pattern.matcher(text);
+        return m.find(from) ? new int[] { m.start(), m.end() } : null;
+    }
+
+    /**
+     * whether {@code $} (without {@link Pattern#MULTILINE}) holds at a
+     * position: at the end, or before a final line terminator
+     */
+    private static boolean dollar(CharSequence text, int i) {
+        int n = text.length();
+        if (i >= n) {
+            return true;
+        } else if (i == n - 1) {
+            char c = text.charAt(i);
+            if (c == '\n') {
+                return i == 0 || text.charAt(i - 1) != '\r';
+            }
+            return c == '\r' || c == '\u0085' || c == '\u2028'
+                    || c == '\u2029';
+        }
+        return i == n - 2 && text.charAt(i) == '\r'
+                && text.charAt(i + 1) == '\n';
+    }
+
+    /**
+     * the partition of the code units into classes that no character set
+     * distinguishes
+     */
+    private static final class Alphabet {
+        private final List<BitSet> sets = new ArrayList<>();
+        private final Map<BitSet, Integer> setIndex = new HashMap<>();
+        /**
+         * class of a code unit, by high and low byte; equal blocks are shared
+         */
+        private char[][] blocks;
+        private int size;
+        private boolean[][] member;
+
+        int add(BitSet set) {
+            return setIndex.computeIfAbsent(set, s -> {
+                sets.add(s);
+                return sets.size() - 1;
+            });
+        }
+
+        void freeze() throws Unsupported {
+            BitSet bounds = new BitSet();
+            bounds.set(0);
+            for (BitSet set : sets) {
+                for (int i = set.nextSetBit(0); i >= 0
+                        && i < RegexTree.END; i = set.nextSetBit(i)) {
+                    bounds.set(i);
+                    i = set.nextClearBit(i);
+                    bounds.set(i);
+                }
+            }
+            Map<BitSet, Integer> classes = new HashMap<>();
+            char[] classOf = new char[RegexTree.END];
+            for (int lo = 0; lo < RegexTree.END;) {
+                int hi = bounds.nextSetBit(lo + 1);
+                if (hi < 0 || hi > RegexTree.END) {
+                    hi = RegexTree.END;
+                }
+                BitSet signature = new BitSet();
+                for (int s = 0; s < sets.size(); s++) {
+                    if (sets.get(s).get(lo)) {
+                        signature.set(s);
+                    }
+                }
+                Integer cls = classes.computeIfAbsent(signature,
+                        k -> classes.size());
+                if (cls >= Character.MAX_VALUE) {
+                    throw new Unsupported("alphabet");
+                }
+                Arrays.fill(classOf, lo, hi, (char) cls.intValue());
+                lo = hi;
+            }
+            size = classes.size();
+            member = new boolean[sets.size()][size + 1];
+            for (int c = 0; c < RegexTree.END; c++) {
+                for (int s = 0; s < sets.size(); s++) {
+                    if (sets.get(s).get(c)) {
+                        member[s][classOf[c]] = true;
+                    }
+                }
+                c = bounds.nextSetBit(c + 1) - 1;
+                if (c < 0) {
+                    break;
+                }
+            }
+            Map<String, char[]> shared = new HashMap<>();
+            blocks = new char[256][];
+            for (int b = 0; b < 256; b++) {
+                char[] block = Arrays.copyOfRange(classOf, b << 8,
+                        (b + 1) << 8);
+                blocks[b] = shared.computeIfAbsent(new String(block),
+                        k -> block);
+            }
+        }
+
+        int classOf(char c) {
+            return blocks[c >>> 8][c & 0xFF];
+        }
+
+        /**
+         * @return the class of the end of input, which is in no set
+         */
+        int end() {
+            return size;
+        }
+
+        boolean contains(int set, int cls) {
+            return member[set][cls];
+        }
+    }
+
+    /**
+     * a Thompson automaton; alternatives are ordered by priority
+     */
+    private static final class Program {
+        static final byte CHAR = 0, ASSERT = 1, SPLIT = 2, JUMP = 3,
+                MATCH = 4;
+        static final int NEGATED = 1, DOLLAR = 2;
+
+        private final Alphabet alphabet;
+        byte[] ops = new byte[64];
+        /**
+         * the character set of CHAR and ASSERT; the first target of SPLIT
+         * and JUMP
+         */
+        int[] arg1 = new int[64];
+        /**
+         * the flags of ASSERT; the second target of SPLIT
+         */
+        int[] arg2 = new int[64];
+        int size = 0;
+
+        Program(Node tree, Alphabet alphabet) throws Unsupported {
+            this.alphabet = alphabet;
+            compile(tree);
+            emit(MATCH, 0, 0);
+        }
+
+        private int emit(byte op, int a1, int a2) throws Unsupported {
+            if (size == MAX_INSTRUCTIONS) {
+                throw new Unsupported("automaton too large");
+            }
+            if (size == ops.length) {
+                ops = Arrays.copyOf(ops, size * 2);
+                arg1 = Arrays.copyOf(arg1, size * 2);
+                arg2 = Arrays.copyOf(arg2, size * 2);
+            }
+            ops[size] = op;
+            arg1[size] = a1;
+            arg2[size] = a2;
+            return size++;
+        }
+
+        private void compile(Node node) throws Unsupported {
+            if (node instanceof Chars) {
+                emit(CHAR, alphabet.add(((Chars) node).set), 0);
+            } else if (node instanceof Assertion) {
+                Assertion a = (Assertion) node;
+                emit(ASSERT, alphabet.add(a.chars),
+                        (a.negated ? NEGATED : 0) | (a.end ? DOLLAR : 0));
+            } else if (node instanceof Seq) {
+                for (Node item : ((Seq) node).items) {
+                    compile(item);
+                }
+            } else if (node instanceof Alt) {
+                List<Node> branches = ((Alt) node).branches;
+                List<Integer> jumps = new ArrayList<>();
+                for (int i = 0; i < branches.size() - 1; i++) {
+                    int split = emit(SPLIT, size + 1, 0);
+                    compile(branches.get(i));
+                    jumps.add(emit(JUMP, 0, 0));
+                    arg2[split] = size;
+                }
+                compile(branches.get(branches.size() - 1));
+                for (int jump : jumps) {
+                    arg1[jump] = size;
+                }
+            } else if (node instanceof Repeat) {
+                Repeat r = (Repeat) node;
+                for (int i = 0; i < r.min; i++) {
+                    compile(r.body);
+                }
+                List<Integer> splits = new ArrayList<>();
+                if (r.max == -1) {
+                    int loop = emit(SPLIT, 0, 0);
+                    splits.add(loop);
+                    compile(r.body);
+                    emit(JUMP, loop, 0);
+                } else {
+                    for (int i = r.min; i < r.max; i++) {
+                        splits.add(emit(SPLIT, 0, 0));
+                        compile(r.body);
+                    }
+                }
+                for (int split : splits) {
+                    if (r.greed == Greed.LAZY) {
+                        arg1[split] = size;
+                        arg2[split] = split + 1;
+                    } else {
+                        arg1[split] = split + 1;
+                        arg2[split] = size;
+                    }
+                }
+            }
+        }
+    }
+
+    private enum Mode {
+        /**
+         * match the whole input: any path reaching the end is accepted
+         */
+        WHOLE,
+        /**
+         * search for the end of the leftmost-first match: paths are ordered
+         * by priority, new paths start at every position until a match is
+         * found, paths of lower priority than a match are dropped
+         */
+        FORWARD,
+        /**
+         * search backward from the end of a match for its leftmost start
+         */
+        BACKWARD
+    }
+
+    /**
+     * a state of the deterministic automaton: the instructions about to
+     * consume a character, and whether paths still start
+     */
+    private static final class State {
+        final int[] threads;
+        final boolean searching;
+        final boolean cached;
+        /**
+         * transitions by class, without and with a match at the position
+         * before; written racily, but States are immutable otherwise
+         */
+        final State[] next;
+        final State[] nextMatched;
+        /**
+         * whether there is a match at the end of input; 0 if unknown
+         */
+        byte endMatch;
+
+        State(int[] threads, boolean searching, boolean cached,
+                int classes) {
+            this.threads = threads;
+            this.searching = searching;
+            this.cached = cached;
+            next = cached ? new State[classes] : null;
+            nextMatched = cached ? new State[classes] : null;
+        }
+
+        boolean isDead() {
+            return threads.length == 0 && !searching;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof State)) {
+                return false;
+            }
+            State other = (State) o;
+            return searching == other.searching
+                    && Arrays.equals(threads, other.threads);
+        }
+
+        @Override
+        public int hashCode() {
+            return Arrays.hashCode(threads) * 2 + (searching ? 1 : 0);
+        }
+    }
+
+    /**
+     * the result of a transition
+     */
+    private static final class Step {
+        final State next;
+        final boolean matched;
+
+        Step(State next, boolean matched) {
+            this.next = next;
+            this.matched = matched;
+        }
+    }
+
+    /**
+     * a deterministic automaton, built lazily from a {@link Program}
+     */
+    private static final class Automaton {
+        private final Program program;
+        private final Alphabet alphabet;
+        private final Mode mode;
+        private final Map<State, State> states = new ConcurrentHashMap<>();
+        private final State start;
+
+        Automaton(Program program, Alphabet alphabet, Mode mode) {
+            this.program = program;
+            this.alphabet = alphabet;
+            this.mode = mode;
+            switch (mode) {
+            case WHOLE:
+                start = intern(new int[] { 0 }, false);
+                break;
+            case FORWARD:
+                start = intern(new int[0], true);
+                break;
+            default:
+                // depends on the position, see #searchBack
+                start = null;
+            }
+        }
+
+        private State intern(int[] threads, boolean searching) {
+            if (states.size() >= MAX_STATES) {
+                return new State(threads, searching, false, 0);
+            }
+            State state = new State(threads, searching, true,
+                    alphabet.size + 1);
+            State known = states.putIfAbsent(state, state);
+            return known == null ? state : known;
+        }
+
+        /**
+         * @return 1 if the whole input matches, 0 if not, or
+         *     {@link #UNDECIDED}
+         */
+        int matches(CharSequence text) {
+            State state = start;
+            boolean[] matched = new boolean[1];
+            for (int i = 0; i < text.length() && !state.isDead(); i++) {
+                state = transition(state, text, i, matched);
+                if (state == null) {
+                    return UNDECIDED;
+                }
+            }
+            return !state.isDead() && endMatches(state) ? 1 : 0;
+        }
+
+        /**
+         * @return the end of the leftmost-first match, -1 if there is none,
+         *     or {@link #UNDECIDED}
+         */
+        int search(CharSequence text, int from) {
+            State state = start;
+            boolean[] matched = new boolean[1];
+            int end = -1;
+            for (int i = from; !state.isDead(); i++) {
+                if (i == text.length()) {
+                    if (endMatches(state)) {
+                        end = i;
+                    }
+                    break;
+                }
+                state = transition(state, text, i, matched);
+                if (state == null) {
+                    return UNDECIDED;
+                } else if (matched[0]) {
+                    end = i;
+                }
+            }
+            return end;
+        }
+
+        /**
+         * @return the leftmost start of a match ending at {@code end}, at or
+         *     after {@code from}, or -1; the input must have been searched
+         *     forward up to {@code end}
+         */
+        int searchBack(CharSequence text, int from, int end) {
+            int context = end < text.length()
+                    ? alphabet.classOf(text.charAt(end))
+                    : alphabet.end();
+            Step first = closure(new int[] { 0 }, false, context,
+                    dollar(text, end));
+            State state = first.next;
+            int start = first.matched ? end : -1;
+            boolean[] matched = new boolean[1];
+            for (int i = end - 1; i >= from && !state.isDead(); i--) {
+                state = transition(state, text, i, matched);
+                if (matched[0]) {
+                    start = i;
+                }
+            }
+            return start;
+        }
+
+        /**
+         * consume the character at a position; forward, whether there is a
+         * match before it is stored in {@code matched}, backward whether
+         * there is one after it
+         *
+         * @return the next state, or null for a surrogate
+         */
+        private State transition(State state, CharSequence text, int i,
+                boolean[] matched) {
+            char c = text.charAt(i);
+            if (Character.isSurrogate(c)) {
+                return null;
+            }
+            int cls = alphabet.classOf(c);
+            if (dollar(text, i)) {
+                Step step = step(state, cls, true);
+                matched[0] = step.matched;
+                return step.next;
+            }
+            if (state.cached) {
+                State next = state.next[cls];
+                if (next != null) {
+                    matched[0] = false;
+                    return next;
+                }
+                next = state.nextMatched[cls];
+                if (next != null) {
+                    matched[0] = true;
+                    return next;
+                }
+            }
+            Step step = step(state, cls, false);
+            if (state.cached && step.next.cached) {
+                if (step.matched) {
+                    state.nextMatched[cls] = step.next;
+                } else {
+                    state.next[cls] = step.next;
+                }
+            }
+            matched[0] = step.matched;
+            return step.next;
+        }
+
+        private boolean endMatches(State state) {
+            if (state.endMatch == 0) {
+                boolean matches = closure(state.threads, state.searching,
+                        alphabet.end(), true).matched;
+                state.endMatch = (byte) (matches ? 2 : 1);
+            }
+            return state.endMatch == 2;
+        }
+
+        private Step step(State state, int cls, boolean dollar) {
+            if (mode == Mode.BACKWARD) {
+                return closure(consume(state.threads, cls), false, cls,
+                        dollar);
+            }
+            Step closed = closure(state.threads, state.searching, cls,
+                    dollar);
+            return new Step(
+                    intern(consume(closed.next.threads, cls),
+                            closed.next.searching),
+                    closed.matched);
+        }
+
+        /**
+         * @return the instructions after those consuming a character class
+         */
+        private int[] consume(int[] threads, int cls) {
+            int[] next = new int[threads.length];
+            int n = 0;
+            for (int pc : threads) {
+                if (alphabet.contains(program.arg1[pc], cls)) {
+                    next[n++] = pc + 1;
+                }
+            }
+            return Arrays.copyOf(next, n);
+        }
+
+        /**
+         * follow the paths to the instructions consuming a character
+         *
+         * @param threads
+         *     the instructions to start with, by priority
+         * @param searching
+         *     whether to start a new path with the lowest priority
+         * @param cls
+         *     the class of the next character, for assertions
+         * @param dollar
+         *     whether {@code $} holds
+         * @return the state of the consuming instructions, and whether a
+         *     match was reached
+         */
+        private Step closure(int[] threads, boolean searching, int cls,
+                boolean dollar) {
+            boolean[] seen = new boolean[program.size];
+            int[] stack = new int[2 * program.size + 2];
+            int[] consuming = new int[program.size];
+            int n = 0;
+            boolean matched = false;
+            roots: for (int r = 0; r <= threads.length; r++) {
+                int sp = 0;
+                if (r < threads.length) {
+                    stack[sp++] = threads[r];
+                } else if (searching) {
+                    stack[sp++] = 0;
+                }
+                while (sp > 0) {
+                    int pc = stack[--sp];
+                    if (seen[pc]) {
+                        continue;
+                    }
+                    seen[pc] = true;
+                    switch (program.ops[pc]) {
+                    case Program.CHAR:
+                        consuming[n++] = pc;
+                        break;
+                    case Program.ASSERT:
+                        int flags = program.arg2[pc];
+                        boolean holds = alphabet.contains(program.arg1[pc],
+                                cls)
+                                || (flags & Program.DOLLAR) != 0 && dollar;
+                        if (holds != ((flags & Program.NEGATED) != 0)) {
+                            stack[sp++] = pc + 1;
+                        }
+                        break;
+                    case Program.SPLIT:
+                        stack[sp++] = program.arg2[pc];
+                        stack[sp++] = program.arg1[pc];
+                        break;
+                    case Program.JUMP:
+                        stack[sp++] = program.arg1[pc];
+                        break;
+                    default:
+                        matched = true;
+                        if (mode == Mode.FORWARD) {
+                            // paths of lower priority are dropped
+                            break roots;
+                        }
+                    }
+                }
+            }
+            int[] next = Arrays.copyOf(consuming, n);
+            if (mode != Mode.FORWARD) {
+                Arrays.sort(next);
+            }
+            boolean stillSearching = searching && !matched;
+            if (mode != Mode.BACKWARD) {
+                // not interned: the states are made by consuming from it
+                return new Step(new State(next, stillSearching, false, 0),
+                        matched);
+            }
+            return new Step(intern(next, stillSearching), matched);
+        }
+    }
+
+}
@@ -0,0 +1,54 @@
+package de.ids.mannheim.clarin.teispeech.utilities;
+
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * running independent per-item work on several threads
+ *
+ * @author bfi
+ *
+ */
+public class ParallelUtilities {
+
+    private ParallelUtilities() {
+    }
+
+    /**
+     * apply a function to all items, in parallel if so configured
+     *
+     * @param items
+     *     the items
+     * @param parallelism
+     *     the number of threads; 1 to apply the function sequentially
+     * @param fun
+     *     the function; must not modify shared state, e.g. the document
+     * @param <T>
+     *     the type of the items
+     * @param <R>
+     *     the type of the results
+     * @return the results, in the order of the items
+     */
+    public static <T, R> List<R> map(List<T> items, int parallelism,
+            Function<T, R> fun) {
+        if (parallelism <= 1 || items.size() < 2) {
+            return items.stream().map(fun).collect(Collectors.toList());
+        }
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            return pool.submit(() -> items.parallelStream().map(fun)
+                    .collect(Collectors.toList())).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        } catch (ExecutionException e) {
+            throw new RuntimeException(e);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+}
@@ -0,0 +1,891 @@
+package de.ids.mannheim.clarin.teispeech.utilities;
+
+import java.nio.CharBuffer;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * syntax trees for the regular subset of {@link Pattern} syntax, as compiled
+ * by {@link DFAPattern}
+ *
+ * <p>
+ * Character sets are sets of UTF-16 code units; sets used in the analysis
+ * additionally contain {@link #END} for the end of the input. Lookahead is
+ * supported if it only inspects the next character or the end of input
+ * ({@code $}); possessive quantifiers are supported where they can be
+ * replaced by greedy ones, see {@link #rewrite(Node, boolean)}.
+ *
+ * @author bfi
+ */
+final class RegexTree {
+
+    /**
+     * the number of code units; also the index of the end of input
+     */
+    static final int END = 0x10000;
+
+    private static final int MAX_COUNT = 1000;
+
+    private static final BitSet LINE_TERMINATORS = setOf(
+            "\n\r\u0085\u2028\u2029");
+
+    private static final BitSet ALL = new BitSet();
+    static {
+        ALL.set(0, END + 1);
+    }
+
+    private RegexTree() {
+    }
+
+    /**
+     * thrown if a pattern uses a construct that cannot be compiled to an
+     * automaton
+     */
+    static class Unsupported extends Exception {
+        private static final long serialVersionUID = 1L;
+
+        Unsupported(String message) {
+            super(message);
+        }
+    }
+
+    abstract static class Node {
+    }
+
+    /**
+     * a single character out of a set
+     */
+    static final class Chars extends Node {
+        final BitSet set;
+
+        Chars(BitSet set) {
+            this.set = set;
+        }
+    }
+
+    static final class Seq extends Node {
+        final List<Node> items;
+
+        Seq(List<Node> items) {
+            this.items = items;
+        }
+    }
+
+    static final class Alt extends Node {
+        final List<Node> branches;
+
+        Alt(List<Node> branches) {
+            this.branches = branches;
+        }
+    }
+
+    enum Greed {
+        GREEDY, LAZY, POSSESSIVE
+    }
+
+    static final class Repeat extends Node {
+        final Node body;
+        final int min;
+        /**
+         * -1 if unbounded
+         */
+        final int max;
+        final Greed greed;
+
+        Repeat(Node body, int min, int max, Greed greed) {
+            this.body = body;
+            this.min = min;
+            this.max = max;
+            this.greed = greed;
+        }
+    }
+
+    /**
+     * a zero-width test of the next character: it is in {@link #chars}, or
+     * {@code $} holds if {@link #end} is set, possibly negated
+     */
+    static final class Assertion extends Node {
+        final BitSet chars;
+        final boolean end;
+        final boolean negated;
+
+        Assertion(BitSet chars, boolean end, boolean negated) {
+            this.chars = chars;
+            this.end = end;
+            this.negated = negated;
+        }
+
+        /**
+         * @param next
+         *     the next code unit, or {@link #END}
+         * @param dollar
+         *     whether {@code $} holds at the position
+         * @return whether the assertion holds
+         */
+        boolean holds(int next, boolean dollar) {
+            return negated != (chars.get(next) || end && dollar);
+        }
+    }
+
+    private static BitSet setOf(String chars) {
+        BitSet set = new BitSet();
+        chars.chars().forEach(set::set);
+        return set;
+    }
+
+    /**
+     * parse a pattern
+     *
+     * @param pattern
+     *     the pattern
+     * @return the syntax tree
+     * @throws Unsupported
+     *     if the pattern uses flags or constructs not supported
+     */
+    static Node parse(Pattern pattern) throws Unsupported {
+        return new Parser(pattern).parse();
+    }
+
+    private static final class Parser {
+        private final String re;
+        private final boolean caseInsensitive;
+        private final boolean dotAll;
+        private int pos = 0;
+
+        Parser(Pattern pattern) throws Unsupported {
+            int flags = pattern.flags();
+            if ((flags & ~(Pattern.CASE_INSENSITIVE | Pattern.DOTALL)) != 0) {
+                throw new Unsupported("flags");
+            }
+            re = pattern.pattern();
+            caseInsensitive = (flags & Pattern.CASE_INSENSITIVE) != 0;
+            dotAll = (flags & Pattern.DOTALL) != 0;
+        }
+
+        Node parse() throws Unsupported {
+            Node node = alternation();
+            if (pos < re.length()) {
+                throw new Unsupported("unbalanced parenthesis");
+            }
+            return node;
+        }
+
+        private boolean more() {
+            return pos < re.length();
+        }
+
+        private boolean accept(char c) {
+            if (more() && re.charAt(pos) == c) {
+                pos++;
+                return true;
+            }
+            return false;
+        }
+
+        private char next() throws Unsupported {
+            if (!more()) {
+                throw new Unsupported("unexpected end");
+            }
+            return re.charAt(pos++);
+        }
+
+        private Node alternation() throws Unsupported {
+            List<Node> branches = new ArrayList<>();
+            branches.add(sequence());
+            while (accept('|')) {
+                branches.add(sequence());
+            }
+            return branches.size() == 1 ? branches.get(0)
+                    : new Alt(branches);
+        }
+
+        private Node sequence() throws Unsupported {
+            List<Node> items = new ArrayList<>();
+            while (more() && re.charAt(pos) != '|' && re.charAt(pos) != ')') {
+                items.add(quantified());
+            }
+            return items.size() == 1 ? items.get(0) : new Seq(items);
+        }
+
+        private Node quantified() throws Unsupported {
+            Node atom = atom();
+            int min, max;
+            if (accept('*')) {
+                min = 0;
+                max = -1;
+            } else if (accept('+')) {
+                min = 1;
+                max = -1;
+            } else if (accept('?')) {
+                min = 0;
+                max = 1;
+            } else if (accept('{')) {
+                min = number();
+                max = accept(',') ? (accept('}') ? -1 : number()) : min;
+                if (max != -1 && !accept('}') || max != -1 && max < min) {
+                    throw new Unsupported("repetition");
+                }
+            } else {
+                return atom;
+            }
+            Greed greed = accept('?') ? Greed.LAZY
+                    : accept('+') ? Greed.POSSESSIVE : Greed.GREEDY;
+            if (atom instanceof Assertion
+                    || more() && "*+?{".indexOf(re.charAt(pos)) >= 0) {
+                throw new Unsupported("repetition");
+            }
+            return new Repeat(atom, min, max, greed);
+        }
+
+        private int number() throws Unsupported {
+            int start = pos;
+            while (more() && Character.isDigit(re.charAt(pos))
+                    && pos - start < 4) {
+                pos++;
+            }
+            if (start == pos) {
+                throw new Unsupported("repetition");
+            }
+            int n = Integer.parseInt(re.substring(start, pos));
+            if (n > MAX_COUNT) {
+                throw new Unsupported("repetition count");
+            }
+            return n;
+        }
+
+        private Node atom() throws Unsupported {
+            char c = next();
+            switch (c) {
+            case '(':
+                return group();
+            case '[':
+                return new Chars(charClass());
+            case '.':
+                BitSet any = new BitSet();
+                any.set(0, END);
+                if (!dotAll) {
+                    any.andNot(LINE_TERMINATORS);
+                }
+                return new Chars(any);
+            case '$':
+                return new Assertion(new BitSet(), true, false);
+            case '\\':
+                if (accept('Q')) {
+                    return quoted();
+                }
+                BitSet set = new BitSet();
+                int single = escape(set);
+                if (single >= 0) {
+                    addChar(set, single);
+                }
+                return new Chars(set);
+            case '^':
+            case '*':
+            case '+':
+            case '?':
+            case '{':
+                throw new Unsupported(String.valueOf(c));
+            default:
+                return literal(c);
+            }
+        }
+
+        private Node literal(char c) throws Unsupported {
+            if (Character.isSurrogate(c)) {
+                throw new Unsupported("supplementary character");
+            }
+            BitSet set = new BitSet();
+            addChar(set, c);
+            return new Chars(set);
+        }
+
+        private Node quoted() throws Unsupported {
+            int end = re.indexOf("\\E", pos);
+            String quote = re.substring(pos, end < 0 ? re.length() : end);
+            pos = end < 0 ? re.length() : end + 2;
+            if (more() && "*+?{".indexOf(re.charAt(pos)) >= 0) {
+                // would only repeat the last character
+                throw new Unsupported("repeated quotation");
+            }
+            List<Node> items = new ArrayList<>();
+            for (char c : quote.toCharArray()) {
+                items.add(literal(c));
+            }
+            return new Seq(items);
+        }
+
+        private Node group() throws Unsupported {
+            Node node;
+            if (accept('?')) {
+                if (accept(':')) {
+                    node = alternation();
+                } else if (accept('=')) {
+                    node = lookahead(alternation(), false);
+                } else if (accept('!')) {
+                    node = lookahead(alternation(), true);
+                } else {
+                    throw new Unsupported("special group");
+                }
+            } else {
+                node = alternation();
+            }
+            if (!accept(')')) {
+                throw new Unsupported("unbalanced parenthesis");
+            }
+            return node;
+        }
+
+        private Assertion lookahead(Node body, boolean negated)
+                throws Unsupported {
+            BitSet chars = new BitSet();
+            boolean[] end = { false };
+            collectLookahead(body, chars, end);
+            return new Assertion(chars, end[0], negated);
+        }
+
+        /**
+         * collect the alternatives of a lookahead of a single character or
+         * {@code $}
+         */
+        private void collectLookahead(Node node, BitSet chars, boolean[] end)
+                throws Unsupported {
+            if (node instanceof Chars) {
+                chars.or(((Chars) node).set);
+            } else if (node instanceof Alt) {
+                for (Node branch : ((Alt) node).branches) {
+                    collectLookahead(branch, chars, end);
+                }
+            } else if (node instanceof Seq
+                    && ((Seq) node).items.size() == 1) {
+                collectLookahead(((Seq) node).items.get(0), chars, end);
+            } else if (node instanceof Assertion && ((Assertion) node).end
+                    && !((Assertion) node).negated
+                    && ((Assertion) node).chars.isEmpty()) {
+                end[0] = true;
+            } else {
+                throw new Unsupported("lookahead");
+            }
+        }
+
+        private BitSet charClass() throws Unsupported {
+            boolean negated = accept('^');
+            BitSet intersection = null;
+            BitSet union = new BitSet();
+            boolean first = true;
+            while (true) {
+                char c = next();
+                if (c == ']' && !first) {
+                    break;
+                } else if (c == ']') {
+                    throw new Unsupported("empty class");
+                } else if (c == '[') {
+                    if (negated) {
+                        throw new Unsupported("nested class in negation");
+                    }
+                    union.or(charClass());
+                } else if (c == '&' && accept('&')) {
+                    if (negated) {
+                        throw new Unsupported("intersection in negation");
+                    }
+                    if (intersection == null) {
+                        intersection = union;
+                    } else {
+                        intersection.and(union);
+                    }
+                    union = new BitSet();
+                    first = true;
+                    continue;
+                } else {
+                    pos--;
+                    int lo = classChar(union);
+                    if (lo >= 0 && more() && re.charAt(pos) == '-'
+                            && pos + 1 < re.length()
+                            && re.charAt(pos + 1) != ']') {
+                        pos++;
+                        if (re.charAt(pos) == '[') {
+                            throw new Unsupported("range");
+                        }
+                        int hi = classChar(new BitSet());
+                        if (hi < lo) {
+                            throw new Unsupported("range");
+                        }
+                        for (int r = lo; r <= hi; r++) {
+                            addChar(union, r);
+                        }
+                    } else if (lo >= 0) {
+                        addChar(union, lo);
+                    }
+                }
+                first = false;
+            }
+            if (intersection != null) {
+                union.and(intersection);
+            }
+            if (negated) {
+                union.flip(0, END);
+            }
+            return union;
+        }
+
+        /**
+         * @return the character, or -1 if a predefined class was added to
+         *     the set
+         */
+        private int classChar(BitSet set) throws Unsupported {
+            char c = next();
+            if (c == '\\') {
+                return escape(set);
+            }
+            if (Character.isSurrogate(c)) {
+                throw new Unsupported("supplementary character");
+            }
+            return c;
+        }
+
+        /**
+         * parse an escape after the backslash
+         *
+         * @param set
+         *     predefined classes are added here
+         * @return the escaped character, or -1 if a predefined class was
+         *     added to the set
+         */
+        private int escape(BitSet set) throws Unsupported {
+            char c = next();
+            BitSet predefined = new BitSet();
+            switch (c) {
+            case 't':
+                return '\t';
+            case 'n':
+                return '\n';
+            case 'r':
+                return '\r';
+            case 'f':
+                return '\f';
+            case 'a':
+                return '\u0007';
+            case 'e':
+                return '\u001B';
+            case 'u':
+                return hex(4);
+            case 'x':
+                if (accept('{')) {
+                    int end = re.indexOf('}', pos);
+                    if (end < 0 || end - pos > 4) {
+                        throw new Unsupported("hex escape");
+                    }
+                    int code = hex(end - pos);
+                    pos++;
+                    return code;
+                }
+                return hex(2);
+            case 'd':
+            case 'D':
+                predefined.set('0', '9' + 1);
+                break;
+            case 's':
+            case 'S':
+                predefined.or(setOf(" \t\n\u000B\f\r"));
+                break;
+            case 'w':
+            case 'W':
+                predefined.set('a', 'z' + 1);
+                predefined.set('A', 'Z' + 1);
+                predefined.set('0', '9' + 1);
+                predefined.set('_');
+                break;
+            case 'p':
+            case 'P':
+                predefined = property();
+                break;
+            default:
+                if (Character.isLetterOrDigit(c)
+                        || Character.isSurrogate(c)) {
+                    throw new Unsupported("\\" + c);
+                }
+                return c;
+            }
+            if (Character.isUpperCase(c)) {
+                predefined.flip(0, END);
+            }
+            set.or(predefined);
+            return -1;
+        }
+
+        private int hex(int digits) throws Unsupported {
+            if (digits < 1 || pos + digits > re.length()) {
+                throw new Unsupported("hex escape");
+            }
+            try {
+                int code = Integer.parseInt(re.substring(pos, pos + digits),
+                        16);
+                pos += digits;
+                if (Character.isSurrogate((char) code)) {
+                    throw new Unsupported("supplementary character");
+                }
+                return code;
+            } catch (NumberFormatException e) {
+                throw new Unsupported("hex escape");
+            }
+        }
+
+        /**
+         * letter categories; with {@link Pattern#CASE_INSENSITIVE}, the
+         * case-sensitive ones are taken from {@link java.util.regex}, as
+         * their meaning changes with it and between Java versions (e.g. since
+         * Java 9, {@code \p{Lu}} stands for all cased letters)
+         */
+        private BitSet property() throws Unsupported {
+            String name;
+            if (accept('{')) {
+                int end = re.indexOf('}', pos);
+                if (end < 0) {
+                    throw new Unsupported("property");
+                }
+                name = re.substring(pos, end);
+                pos = end + 1;
+            } else {
+                name = String.valueOf(next());
+            }
+            if (name.startsWith("Is")) {
+                name = name.substring(2);
+            }
+            BitSet set = new BitSet();
+            if (caseInsensitive && !"L".equals(name)) {
+                return caseFoldedProperty(name);
+            }
+            for (int c = 0; c < END; c++) {
+                int type = Character.getType(c);
+                boolean member;
+                switch (name) {
+                case "L":
+                    member = Character.isLetter(c);
+                    break;
+                case "Lu":
+                    member = type == Character.UPPERCASE_LETTER;
+                    break;
+                case "Ll":
+                    member = type == Character.LOWERCASE_LETTER;
+                    break;
+                default:
+                    throw new Unsupported("property " + name);
+                }
+                if (member) {
+                    set.set(c);
+                }
+            }
+            return set;
+        }
+
+        /**
+         * the code units a case-sensitive letter category matches without
+         * case, as by {@link java.util.regex}
+         */
+        private BitSet caseFoldedProperty(String name) throws Unsupported {
+            if (!"Lu".equals(name) && !"Ll".equals(name)) {
+                throw new Unsupported("property " + name);
+            }
+            Matcher matcher = Pattern
+                    .compile("\\p{" + name + "}", Pattern.CASE_INSENSITIVE)
+                    .matcher("");
+            BitSet set = new BitSet();
+            char[] unit = new char[1];
+            CharBuffer text = CharBuffer.wrap(unit);
+            for (int c = 0; c < END; c++) {
+                unit[0] = (char) c;
+                if (matcher.reset(text).matches()) {
+                    set.set(c);
+                }
+            }
+            return set;
+        }
+
+        /**
+         * add a character, and its case variant if matching without case
+         * (which only affects US-ASCII without {@link Pattern#UNICODE_CASE})
+         */
+        private void addChar(BitSet set, int c) {
+            set.set(c);
+            if (caseInsensitive && c < 128 && Character.isLetter(c)) {
+                set.set(Character.toLowerCase(c));
+                set.set(Character.toUpperCase(c));
+            }
+        }
+    }
+
+    /**
+     * reverse a tree; assertions stay in place, as they test positions
+     *
+     * @param node
+     *     the tree
+     * @return a tree for the reversed strings
+     */
+    static Node reverse(Node node) {
+        if (node instanceof Seq) {
+            List<Node> items = new ArrayList<>();
+            for (Node item : ((Seq) node).items) {
+                items.add(reverse(item));
+            }
+            Collections.reverse(items);
+            return new Seq(items);
+        } else if (node instanceof Alt) {
+            List<Node> branches = new ArrayList<>();
+            for (Node branch : ((Alt) node).branches) {
+                branches.add(reverse(branch));
+            }
+            return new Alt(branches);
+        } else if (node instanceof Repeat) {
+            Repeat r = (Repeat) node;
+            return new Repeat(reverse(r.body), r.min, r.max, r.greed);
+        }
+        return node;
+    }
+
+    /**
+     * the result of {@link #rewrite(Node, boolean)}
+     */
+    static final class Rewritten {
+        final Node tree;
+        /**
+         * whether the tree without possessive quantifiers has the same
+         * matches as the original one
+         */
+        final boolean exact;
+
+        Rewritten(Node tree, boolean exact) {
+            this.tree = tree;
+            this.exact = exact;
+        }
+    }
+
+    /**
+     * replace possessive quantifiers by greedy ones
+     *
+     * <p>
+     * A possessive quantifier never gives back what it matched. This is
+     * equivalent to greedy matching if
+     * <ul>
+     * <li>it repeats a character set: then it matches the longest run, i.e.
+     * greedy repetition followed by a negative lookahead for the set;</li>
+     * <li>when searching, whatever follows it cannot fail;</li>
+     * <li>the repetition is LL(1): at every choice point within it, including
+     * whether to repeat once more, the next character determines the
+     * choice.</li>
+     * </ul>
+     * Otherwise the possessive quantifier is replaced by a greedy one and the
+     * tree accepts a superset of the original matches.
+     *
+     * @param node
+     *     the tree
+     * @param search
+     *     whether the tree is used for searching rather than for matching the
+     *     whole input
+     * @return the tree without possessive quantifiers
+     */
+    static Rewritten rewrite(Node node, boolean search) {
+        BitSet follow = new BitSet();
+        if (search) {
+            follow.or(ALL);
+        } else {
+            follow.set(END);
+        }
+        boolean[] exact = { true };
+        Node tree = rewrite(node, follow, search, exact);
+        return new Rewritten(tree, exact[0]);
+    }
+
+    /**
+     * @param follow
+     *     what may follow the node
+     * @param unfailing
+     *     whether the rest of the pattern after the node always matches
+     */
+    private static Node rewrite(Node node, BitSet follow, boolean unfailing,
+            boolean[] exact) {
+        if (node instanceof Seq) {
+            List<Node> items = ((Seq) node).items;
+            Node[] rewritten = new Node[items.size()];
+            BitSet f = follow;
+            boolean u = unfailing;
+            for (int i = items.size() - 1; i >= 0; i--) {
+                rewritten[i] = rewrite(items.get(i), f, u, exact);
+                u = u && alwaysEmpty(items.get(i));
+                f = first(items.get(i), f);
+            }
+            List<Node> result = new ArrayList<>();
+            Collections.addAll(result, rewritten);
+            return new Seq(result);
+        } else if (node instanceof Alt) {
+            List<Node> branches = new ArrayList<>();
+            for (Node branch : ((Alt) node).branches) {
+                branches.add(rewrite(branch, follow, unfailing, exact));
+            }
+            return new Alt(branches);
+        } else if (node instanceof Repeat) {
+            Repeat r = (Repeat) node;
+            Node body = rewrite(r.body, bodyFollow(r.body, follow), false,
+                    exact);
+            if (r.greed != Greed.POSSESSIVE) {
+                return new Repeat(body, r.min, r.max, r.greed);
+            }
+            if (body instanceof Chars) {
+                return longestRun((Chars) body, r.min, r.max);
+            }
+            Repeat greedy = new Repeat(body, r.min, r.max, Greed.GREEDY);
+            if (!unfailing && !isLL1(greedy, follow)) {
+                exact[0] = false;
+            }
+            return greedy;
+        }
+        return node;
+    }
+
+    private static Node longestRun(Chars chars, int min, int max) {
+        Assertion noMore = new Assertion(chars.set, false, true);
+        if (max == min) {
+            return new Repeat(chars, min, max, Greed.GREEDY);
+        } else if (max == -1) {
+            List<Node> items = new ArrayList<>();
+            items.add(new Repeat(chars, min, max, Greed.GREEDY));
+            items.add(noMore);
+            return new Seq(items);
+        }
+        List<Node> shorter = new ArrayList<>();
+        shorter.add(new Repeat(chars, min, max - 1, Greed.GREEDY));
+        shorter.add(noMore);
+        List<Node> branches = new ArrayList<>();
+        branches.add(new Repeat(chars, max, max, Greed.GREEDY));
+        branches.add(new Seq(shorter));
+        return new Alt(branches);
+    }
+
+    private static BitSet bodyFollow(Node body, BitSet follow) {
+        BitSet f = first(body, ALL);
+        f.or(follow);
+        return f;
+    }
+
+    /**
+     * @return whether the node can match the empty string without testing
+     *     anything
+     */
+    private static boolean alwaysEmpty(Node node) {
+        if (node instanceof Seq) {
+            return ((Seq) node).items.stream()
+                    .allMatch(RegexTree::alwaysEmpty);
+        } else if (node instanceof Alt) {
+            return ((Alt) node).branches.stream()
+                    .anyMatch(RegexTree::alwaysEmpty);
+        } else if (node instanceof Repeat) {
+            return ((Repeat) node).min == 0
+                    || alwaysEmpty(((Repeat) node).body);
+        }
+        return false;
+    }
+
+    private static boolean nullable(Node node) {
+        if (node instanceof Seq) {
+            return ((Seq) node).items.stream().allMatch(RegexTree::nullable);
+        } else if (node instanceof Alt) {
+            return ((Alt) node).branches.stream()
+                    .anyMatch(RegexTree::nullable);
+        } else if (node instanceof Repeat) {
+            return ((Repeat) node).min == 0
+                    || nullable(((Repeat) node).body);
+        }
+        return node instanceof Assertion;
+    }
+
+    /**
+     * the characters (or the end) that may come next when matching a node
+     *
+     * @param node
+     *     the node
+     * @param follow
+     *     what may come after the node
+     * @return a (possibly too large) new set
+     */
+    private static BitSet first(Node node, BitSet follow) {
+        BitSet result;
+        if (node instanceof Chars) {
+            result = (BitSet) ((Chars) node).set.clone();
+        } else if (node instanceof Assertion) {
+            Assertion a = (Assertion) node;
+            result = new BitSet();
+            if (a.negated) {
+                result.or(ALL);
+                result.andNot(a.chars);
+                if (a.end) {
+                    result.clear(END);
+                }
+            } else {
+                result.or(a.chars);
+                if (a.end) {
+                    result.set(END);
+                    result.or(LINE_TERMINATORS);
+                }
+            }
+            result.and(follow);
+        } else if (node instanceof Seq) {
+            result = (BitSet) follow.clone();
+            List<Node> items = ((Seq) node).items;
+            for (int i = items.size() - 1; i >= 0; i--) {
+                result = first(items.get(i), result);
+            }
+        } else if (node instanceof Alt) {
+            result = new BitSet();
+            for (Node branch : ((Alt) node).branches) {
+                result.or(first(branch, follow));
+            }
+        } else {
+            Repeat r = (Repeat) node;
+            result = first(r.body, bodyFollow(r.body, follow));
+            if (r.min == 0) {
+                result.or(follow);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return whether every choice in the node is determined by the next
+     *     character
+     */
+    private static boolean isLL1(Node node, BitSet follow) {
+        if (node instanceof Seq) {
+            BitSet f = follow;
+            List<Node> items = ((Seq) node).items;
+            for (int i = items.size() - 1; i >= 0; i--) {
+                if (!isLL1(items.get(i), f)) {
+                    return false;
+                }
+                f = first(items.get(i), f);
+            }
+            return true;
+        } else if (node instanceof Alt) {
+            BitSet seen = new BitSet();
+            for (Node branch : ((Alt) node).branches) {
+                BitSet f = first(branch, follow);
+                if (f.intersects(seen) || !isLL1(branch, follow)) {
+                    return false;
+                }
+                seen.or(f);
+            }
+            return true;
+        } else if (node instanceof Repeat) {
+            Repeat r = (Repeat) node;
+            BitSet bodyFollow = bodyFollow(r.body, follow);
+            if (r.max != r.min && (nullable(r.body)
+                    || first(r.body, bodyFollow).intersects(follow))) {
+                return false;
+            }
+            return isLL1(r.body, bodyFollow);
+        }
+        return true;
+    }
+
+}
@@ -0,0 +1,130 @@
+package de.ids.mannheim.clarin.teispeech.workflow;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * transcribes with the G2P web service of the Bavarian Archive for Speech
+ * Signals (BAS).
+ *
+ * <p>
+ * After the service failed, e.g. for lack of network access, it is not asked
+ * again for {@value #RETRY_AFTER} milliseconds, so that the other providers
+ * take over without waiting for every language.
+ *
+ * <p>
+ * With a {@link G2PCache}, only the word forms not in the cache are sent to
+ * the service, each once, and their transcriptions are added to the cache.
+ *
+ * @author bfi
+ *
+ */
+public class BASG2PProvider implements G2PProvider {
+
+    /**
+     * milliseconds to skip the service after it failed
+     */
+    public static final long RETRY_AFTER = 300000;
+
+    private final static Logger LOGGER = LoggerFactory
+            .getLogger(BASG2PProvider.class.getName());
+
+    private volatile long unavailableUntil = 0;
+
+    private final G2PCache cache;
+
+    /**
+     * make a provider that sends all words to the service
+     */
+    public BASG2PProvider() {
+        this(null);
+    }
+
+    /**
+     * make a provider that sends only the words not in a cache
+     *
+     * @param cache
+     *     the cache, or {@code null}
+     */
+    public BASG2PProvider(G2PCache cache) {
+        this.cache = cache;
+    }
+
+    @Override
+    public String getName() {
+        return "bas";
+    }
+
+    @Override
+    public Optional<String> getLocale(String language) {
+        return PseudoAlign.GraphToPhoneme.correspondsTo(language);
+    }
+
+    @Override
+    public String[] getTranscription(List<String> words, String locale,
+            boolean syllabified) throws IOException {
+        if (cache == null) {
+            return request(words, locale, syllabified);
+        }
+        Map<String, String> known = cache.get(locale, syllabified, words);
+        List<String> missing = new ArrayList<>(new LinkedHashSet<>(words));
+        missing.removeAll(known.keySet());
+        LOGGER.info("{} of {} words in G2P cache, hit rate: {}",
+                words.size() - missing.size(), words.size(),
+                String.format("%.3f", cache.getHitRate()));
+        if (!missing.isEmpty()) {
+            String[] fresh = request(missing, locale, syllabified);
+            if (fresh.length != missing.size()) {
+                throw new IOException(String.format(
+                        "BAS web service returned %d instead of %d words",
+                        fresh.length, missing.size()));
+            }
+            Map<String, String> added = new HashMap<>();
+            for (int i = 0; i < fresh.length; i++) {
+                added.put(missing.get(i), fresh[i]);
+            }
+            cache.put(locale, syllabified, added);
+            known.putAll(added);
+        }
+        return words.stream().map(known::get).toArray(String[]::new);
+    }
+
+    /**
+     * have words transcribed by the service
+     *
+     * @param words
+     *     the words
+     * @param locale
+     *     the locale
+     * @param syllabified
+     *     whether to separate syllables by full stops
+     * @return the transcriptions
+     * @throws IOException
+     *     if the service failed or is skipped
+     */
+    private String[] request(List<String> words, String locale,
+            boolean syllabified) throws IOException {
+        if (System.currentTimeMillis() < unavailableUntil) {
+            throw new IOException("BAS web service unavailable");
+        }
+        Optional<String[]> transcription;
+        try {
+            transcription = PseudoAlign.GraphToPhoneme.getTranscription(
+                    String.join(" ", words), locale, syllabified);
+        } catch (RuntimeException e) {
+            unavailableUntil = System.currentTimeMillis() + RETRY_AFTER;
+            throw new IOException(e.getCause() != null ? e.getCause() : e);
+        }
+        return transcription.orElseThrow(() -> new IOException(
+                "No transcription from BAS web service"));
+    }
+
+}
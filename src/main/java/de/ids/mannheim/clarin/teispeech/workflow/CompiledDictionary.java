@@ -0,0 +1,285 @@
+package de.ids.mannheim.clarin.teispeech.workflow;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.BiConsumer;
+
+/**
+ * a read-only dictionary in a compact binary format, looked up directly in a
+ * (memory-mapped) buffer: nothing is copied to the heap at load time, and
+ * JVMs mapping the same file share its pages.
+ *
+ * <p>
+ * Only files can be mapped, i.e. a dictionary named by the system property
+ * {@code normalization.dictionary} or on the class path as a file. From a
+ * JAR, every JVM reads a copy of its own into a buffer outside of the heap.
+ *
+ * <p>
+ * Layout, big-endian: magic number, version, number of entries {@code n};
+ * {@code n + 1} offsets of the keys and {@code n + 1} offsets of the values,
+ * relative to the start of the key and value areas; the keys in UTF-8, sorted
+ * by bytes, i.e. by code points; the values in UTF-8.
+ *
+ * @author bfi
+ *
+ */
+final class CompiledDictionary implements Lexicon {
+
+    /**
+     * the usual file name extension
+     */
+    static final String EXTENSION = ".bin";
+
+    private static final int MAGIC = 0x54444943; // TDIC
+    private static final int VERSION = 1;
+    private static final int HEADER = 12;
+
+    private final ByteBuffer buffer;
+    private final int size;
+    private final int keyOffsets;
+    private final int valueOffsets;
+    private final int keys;
+    private final int values;
+
+    /**
+     * whether {@link String#toLowerCase()} is not the same as lower-casing
+     * character by character in the default locale
+     */
+    private static final boolean SPECIAL_LOWER_CASE = Arrays
+            .asList("tr", "az", "lt")
+            .contains(Locale.getDefault().getLanguage());
+
+    private CompiledDictionary(ByteBuffer buffer) throws IOException {
+        this.buffer = buffer;
+        if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+            throw new IOException("Not a compiled dictionary!");
+        }
+        size = buffer.getInt(8);
+        keyOffsets = HEADER;
+        valueOffsets = keyOffsets + 4 * (size + 1);
+        keys = valueOffsets + 4 * (size + 1);
+        values = keys + buffer.getInt(keyOffsets + 4 * size);
+    }
+
+    /**
+     * memory-map a compiled dictionary
+     *
+     * @param file
+     *     the dictionary file
+     * @return the dictionary
+     * @throws IOException
+     *     if the file is unavailable or not a compiled dictionary
+     */
+    static CompiledDictionary map(File file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(),
+                StandardOpenOption.READ)) {
+            return new CompiledDictionary(channel
+                    .map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    /**
+     * read a compiled dictionary into a buffer outside of the heap, e.g. from
+     * a JAR, which cannot be mapped; the source is streamed into the buffer
+     *
+     * @param stream
+     *     the dictionary source
+     * @param length
+     *     the length of the dictionary in bytes, if known, else -1
+     * @return the dictionary
+     * @throws IOException
+     *     if the source is unavailable or not a compiled dictionary
+     */
+    static CompiledDictionary read(InputStream stream, long length)
+            throws IOException {
+        // one byte more than expected, so that the end is read without growing:
+        ByteBuffer buffer = ByteBuffer.allocateDirect(
+                length >= 0 && length < Integer.MAX_VALUE ? (int) length + 1
+                        : 1 << 20);
+        ReadableByteChannel channel = Channels.newChannel(stream);
+        while (channel.read(buffer) >= 0) {
+            if (!buffer.hasRemaining()) {
+                ByteBuffer grown = ByteBuffer
+                        .allocateDirect(2 * buffer.capacity());
+                buffer.flip();
+                grown.put(buffer);
+                buffer = grown;
+            }
+        }
+        buffer.flip();
+        return new CompiledDictionary(buffer.slice());
+    }
+
+    /**
+     * write a dictionary in the compiled format
+     *
+     * @param dict
+     *     the dictionary
+     * @param file
+     *     the output file
+     * @throws IOException
+     *     if the file cannot be written
+     */
+    static void write(Map<String, String> dict, File file)
+            throws IOException {
+        List<byte[][]> entries = new ArrayList<>(dict.size());
+        dict.forEach((k, v) -> entries
+                .add(new byte[][] { k.getBytes(StandardCharsets.UTF_8),
+                        v.getBytes(StandardCharsets.UTF_8) }));
+        entries.sort((e1, e2) -> compareBytes(e1[0], e2[0]));
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(file)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(entries.size());
+            for (int part = 0; part < 2; part++) {
+                int offset = 0;
+                for (byte[][] entry : entries) {
+                    out.writeInt(offset);
+                    offset += entry[part].length;
+                }
+                out.writeInt(offset);
+            }
+            for (int part = 0; part < 2; part++) {
+                for (byte[][] entry : entries) {
+                    out.write(entry[part]);
+                }
+            }
+        }
+    }
+
+    private static int compareBytes(byte[] a, byte[] b) {
+        for (int i = 0; i < Math.min(a.length, b.length); i++) {
+            int c = Integer.compare(a[i] & 0xff, b[i] & 0xff);
+            if (c != 0) {
+                return c;
+            }
+        }
+        return Integer.compare(a.length, b.length);
+    }
+
+    /**
+     * @return the number of entries
+     */
+    @Override
+    public int size() {
+        return size;
+    }
+
+    /**
+     * look up a word
+     *
+     * @param word
+     *     the word
+     * @param lowerCase
+     *     whether to look up the word in lower case, as by
+     *     {@link String#toLowerCase()}; lower-casing is done while comparing,
+     *     without making a new string
+     * @return the value, or {@code null} if there is none
+     */
+    @Override
+    public String get(String word, boolean lowerCase) {
+        if (lowerCase && (SPECIAL_LOWER_CASE || word.indexOf('\u0130') >= 0
+                || word.indexOf('\u03a3') >= 0)) {
+            // context- or locale-dependent lower case
+            word = word.toLowerCase();
+            lowerCase = false;
+        }
+        int low = 0;
+        int high = size - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int c = compare(word, lowerCase, mid);
+            if (c > 0) {
+                low = mid + 1;
+            } else if (c < 0) {
+                high = mid - 1;
+            } else {
+                return value(mid);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * compare a word to a key by code points
+     */
+    private int compare(String word, boolean lowerCase, int index) {
+        int pos = keys + buffer.getInt(keyOffsets + 4 * index);
+        int end = keys + buffer.getInt(keyOffsets + 4 * (index + 1));
+        int i = 0;
+        while (i < word.length() && pos < end) {
+            int cp = word.codePointAt(i);
+            i += Character.charCount(cp);
+            if (lowerCase) {
+                cp = Character.toLowerCase(cp);
+            }
+            // decode UTF-8:
+            int b = buffer.get(pos++) & 0xff;
+            int key;
+            if (b < 0x80) {
+                key = b;
+            } else if (b < 0xe0) {
+                key = (b & 0x1f) << 6 | buffer.get(pos++) & 0x3f;
+            } else if (b < 0xf0) {
+                key = (b & 0x0f) << 12 | (buffer.get(pos++) & 0x3f) << 6
+                        | buffer.get(pos++) & 0x3f;
+            } else {
+                key = (b & 0x07) << 18 | (buffer.get(pos++) & 0x3f) << 12
+                        | (buffer.get(pos++) & 0x3f) << 6
+                        | buffer.get(pos++) & 0x3f;
+            }
+            if (cp != key) {
+                return Integer.compare(cp, key);
+            }
+        }
+        if (i < word.length()) {
+            return 1;
+        }
+        return pos < end ? -1 : 0;
+    }
+
+    /**
+     * iterate over all entries, in the order of the keys
+     *
+     * @param action
+     *     what to do with key and value
+     */
+    @Override
+    public void forEach(BiConsumer<String, String> action) {
+        for (int i = 0; i < size; i++) {
+            action.accept(string(keys, keyOffsets, i),
+                    string(values, valueOffsets, i));
+        }
+    }
+
+    private String value(int index) {
+        return string(values, valueOffsets, index);
+    }
+
+    private String string(int area, int offsets, int index) {
+        int start = buffer.getInt(offsets + 4 * index);
+        int end = buffer.getInt(offsets + 4 * (index + 1));
+        byte[] bytes = new byte[end - start];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = buffer.get(area + start + i);
+        }
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+}
@@ -1,31 +1,39 @@
 package de.ids.mannheim.clarin.teispeech.workflow;
 
 import java.io.BufferedReader;
+import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.PrintWriter;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.URLConnection;
 import java.nio.charset.Charset;
 import java.text.Collator;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Objects;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BiConsumer;
 import java.util.function.BinaryOperator;
 import java.util.function.Consumer;
 import java.util.function.Function;
 import java.util.stream.Collectors;
 
-import javax.xml.parsers.ParserConfigurationException;
-
 import org.apache.commons.lang3.StringUtils;
-import org.korpora.useful.XMLUtilities;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.w3c.dom.Document;
-import org.xml.sax.SAXException;
 
 /**
  * A normalizer based on the dictionaries from the EXMARaLDA project, namely
@@ -35,14 +43,24 @@ import org.xml.sax.SAXException;
  * <li>a dictionary of capitalized-only-occurring words from Deutsches
  * Referenzkorpus (DeReKo).</li>
  * </ul>
+ * optionally overridden by a project-specific dictionary, which is reloaded
+ * when its file changes.
+ *
+ * <p>
+ * Each normalizer looks words up in an immutable {@link DictionarySnapshot};
+ * reloading the overrides replaces the snapshot as a whole, so lookups never
+ * lock.
  *
  * @author bfi
  *
  */
 public class DictionaryNormalizer implements WordNormalizer {
 
-    // the dictionary:
-    private static Map<String, String> dict = new ConcurrentHashMap<>();
+    // the shared FOLK and DeReKo layers, in order of precedence:
+    private static volatile DictionarySnapshot base;
+
+    // the FOLK forms for fuzzy lookup, built when first needed:
+    private static volatile FuzzyIndex fuzzyIndex;
 
     private final static Logger LOGGER = LoggerFactory
             .getLogger(DictionaryNormalizer.class.getName());
@@ -53,11 +71,21 @@ public class DictionaryNormalizer implements WordNormalizer {
     private static final String DICT_PATH = "dict.tsv";
     private static final String DICT_PATH_FILE = "src/main/resources/"
             + DICT_PATH;
+    private static final String DICT_BIN_PATH = "dict"
+            + CompiledDictionary.EXTENSION;
+    private static final String DICT_BIN_PATH_FILE = "src/main/resources/"
+            + DICT_BIN_PATH;
 
-    private static boolean folkLoaded = false;
-    private static boolean derekoLoaded = false;
+    /**
+     * system property naming a compiled dictionary file to use instead of the
+     * one on the class path
+     */
+    public static final String DICT_PROPERTY = "normalization.dictionary";
 
-    private static boolean debug;
+    /**
+     * how often to check whether the overrides file has changed
+     */
+    private static final long CHECK_INTERVAL = TimeUnit.SECONDS.toNanos(2);
 
     private static final BinaryOperator<String> strCollider = (u, v) -> {
         LOGGER.warn("«{}» ignored, already an entry for «{}»", v, u);
@@ -67,42 +95,25 @@ public class DictionaryNormalizer implements WordNormalizer {
     /**
      * load the dictionary generated from the FOLK data
      *
-     * @param force
-     *     whether to force loading even if data already loaded
+     * @return the dictionary
      * @throws IOException
      *     if file (included) broken/unavailable
      */
-    private static void loadFolksDict(boolean force) throws IOException {
-        if (folkLoaded && !force) {
-            return;
-        }
+    private static Map<String, String> loadFolksDict() throws IOException {
+        Map<String, String> folkDict;
         try (InputStream folkSource = DictionaryNormalizer.class
                 .getClassLoader().getResourceAsStream(FOLKS_PATH)) {
-            Document document;
-            try {
-                document = XMLUtilities.parseXML(folkSource);
-            } catch (SAXException e) {
-                throw new RuntimeException(
-                        "Dictionary broken! – " + e.getMessage());
-            } catch (ParserConfigurationException ex) {
-                throw new RuntimeException(
-                        "XML parsing broken! – " + ex.getMessage());
-            }
-            XMLUtilities.toElementStream(document.getElementsByTagName("entry"))
-                    .forEach(entry -> {
-                        String from = entry.getAttribute("form");
-                        @SuppressWarnings("OptionalGetWithoutIsPresent")
-                        String to = XMLUtilities
-                                .toElementStream(
-                                        entry.getElementsByTagName("n"))
-                                .max(Comparator.comparing(e -> Integer
-                                        .parseInt(e.getAttribute("freq"))))
-                                .get().getAttribute("corr");
-                        dict.put(from, to);
-                    });
-            LOGGER.info(String.format("FOLK only: %d entries", dict.size()));
-            folkLoaded = true;
+            // later entries win, as they did with DOM parsing:
+            folkDict = FolkLexiconReader
+                    .entries(Objects.requireNonNull(folkSource,
+                            "FOLK dictionary not available!"))
+                    .parallel()
+                    .collect(Collectors.toMap(FolkLexiconReader.Entry::getForm,
+                            FolkLexiconReader.Entry::getNormalization,
+                            (u, v) -> v));
+            LOGGER.info(String.format("FOLK only: %d entries", folkDict.size()));
         }
+        return folkDict;
     }
 
     /**
@@ -128,14 +139,10 @@ public class DictionaryNormalizer implements WordNormalizer {
     /**
      * load the dictionary generated from DeReKo data
      *
-     * @param force
-     *     the whether to force loading even if data already loaded
+     * @return the dictionary
      */
-    private static void loadDerekoDict(boolean force) {
-        if (derekoLoaded && !force) {
-            return;
-        }
-        if (debug) {
+    private static Map<String, String> loadDerekoDict() {
+        if (LOGGER.isDebugEnabled()) {
             withDerekoReader(derekoReader -> {
                 // only for statistics at the moment
                 Map<String, String> derekoDict = derekoReader.lines().parallel()
@@ -143,38 +150,71 @@ public class DictionaryNormalizer implements WordNormalizer {
                         .collect(Collectors.toMap(String::toLowerCase,
                                 Function.identity(), strCollider,
                                 ConcurrentHashMap::new));
-                LOGGER.info("DEREKO: {} entries", derekoDict.size());
+                LOGGER.debug("DEREKO: {} entries", derekoDict.size());
             });
         }
-        withDerekoReader(derekoReader -> {
-            derekoReader.lines()
-                    // .parallel() // uncomment if order is irrelevant
-                    .map(StringUtils::strip).filter(s -> !s.isEmpty())
-                    .forEach(l -> dict.putIfAbsent(l.toLowerCase(), l));
-            LOGGER.info("Final dictionary: {} entries", dict.size());
-            derekoLoaded = true;
-        });
+        Map<String, String> derekoDict = new HashMap<>();
+        withDerekoReader(derekoReader -> derekoReader.lines()
+                // .parallel() // uncomment if order is irrelevant
+                .map(StringUtils::strip).filter(s -> !s.isEmpty())
+                .forEach(l -> derekoDict.putIfAbsent(l.toLowerCase(), l)));
+        LOGGER.info("DEREKO only: {} entries", derekoDict.size());
+        return derekoDict;
     }
 
     /**
      * load the dictionary compiled from both FOLK and DeReKo
+     *
+     * @return the dictionary
      */
-    private static void loadCompiledDict() {
+    private static Lexicon loadCompiledDict() {
         try (InputStream dictSource = DictionaryNormalizer.class
                 .getClassLoader().getResourceAsStream(DICT_PATH);
                 InputStreamReader dictReader = new InputStreamReader(
                         Objects.requireNonNull(dictSource));
                 BufferedReader dictBReader = new BufferedReader(dictReader)) {
-            dict = dictBReader.lines().parallel().map(l -> l.split("\t"))
-                    .collect(Collectors.toMap(l -> l[0], l -> l[1], strCollider,
-                            ConcurrentHashMap::new));
-            derekoLoaded = true;
-            folkLoaded = true;
+            return Lexicon.of(dictBReader.lines().parallel()
+                    .map(l -> l.split("\t"))
+                    .collect(Collectors.toMap(l -> l[0], l -> l[1],
+                            strCollider, ConcurrentHashMap::new)));
         } catch (IOException e) {
             throw new RuntimeException(e);
         }
     }
 
+    /**
+     * load the binary dictionary compiled from both FOLK and DeReKo,
+     * memory-mapped if it is a file, see {@link #DICT_PROPERTY}, else read
+     * outside of the heap
+     *
+     * @return the dictionary, or {@code null} if unavailable
+     * @throws IOException
+     *     if the dictionary is broken
+     */
+    private static CompiledDictionary loadBinaryDict() throws IOException {
+        String dictFile = System.getProperty(DICT_PROPERTY);
+        if (dictFile != null) {
+            return CompiledDictionary.map(new File(dictFile));
+        }
+        URL dictURL = DictionaryNormalizer.class.getClassLoader()
+                .getResource(DICT_BIN_PATH);
+        if (dictURL == null) {
+            return null;
+        }
+        if ("file".equals(dictURL.getProtocol())) {
+            try {
+                return CompiledDictionary.map(new File(dictURL.toURI()));
+            } catch (URISyntaxException e) {
+                throw new IOException(e);
+            }
+        }
+        URLConnection connection = dictURL.openConnection();
+        try (InputStream dictSource = connection.getInputStream()) {
+            return CompiledDictionary.read(dictSource,
+                    connection.getContentLengthLong());
+        }
+    }
+
     /**
      * write the combined FOLK/DeReKo dictionary to TSV (will be included in the
      * JAR if available)
@@ -185,6 +225,8 @@ public class DictionaryNormalizer implements WordNormalizer {
 
             Collator collator = Collator.getInstance(Locale.GERMAN);
             collator.setStrength(Collator.PRIMARY);
+            Map<String, String> dict = new LinkedHashMap<>();
+            forEachEntry(dict::put);
             dict.entrySet().stream()
                     .sorted(Comparator.comparing(Map.Entry::getKey, collator))
                     .forEach(entry -> out.println(String.format("%s\t%s",
@@ -195,39 +237,167 @@ public class DictionaryNormalizer implements WordNormalizer {
         System.out.format("Wrote dictionary to <%s>.\n", DICT_PATH_FILE);
     }
 
+    /**
+     * write the combined FOLK/DeReKo dictionary in the binary format of
+     * {@link CompiledDictionary} (will be included in the JAR if available)
+     */
+    public static void writeCompiledDict() {
+        Map<String, String> dict = new HashMap<>();
+        forEachEntry(dict::put);
+        try {
+            CompiledDictionary.write(dict, new File(DICT_BIN_PATH_FILE));
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        System.out.format("Wrote compiled dictionary to <%s>.\n",
+                DICT_BIN_PATH_FILE);
+    }
+
     /**
      * load the dictionaries
      *
      * @param force
-     *     whether to try loading the compiled dictionary, and whether to force
-     *     loading the DeReKo- and FOLK-derived dictionaries
+     *     whether to try loading the compiled dictionary (binary, else TSV),
+     *     and whether to force loading the DeReKo- and FOLK-derived
+     *     dictionaries
      */
-    @SuppressWarnings("ConstantConditions")
-    public static void loadDictionary(boolean force) {
+    public static synchronized void loadDictionary(boolean force) {
+        if (!force && base != null) {
+            return;
+        }
+        base = readDictionary(force);
+    }
+
+    /**
+     * read the dictionaries without keeping them, see
+     * {@link #loadDictionary(boolean)}
+     *
+     * @param force
+     *     whether to skip the compiled dictionary
+     * @return the FOLK and DeReKo layers
+     */
+    private static DictionarySnapshot readDictionary(boolean force) {
         if (!force) {
             try {
-                loadCompiledDict();
+                CompiledDictionary compiled = loadBinaryDict();
+                if (compiled != null) {
+                    LOGGER.info("Compiled dictionary: {} entries",
+                            compiled.size());
+                    return new DictionarySnapshot(
+                            Collections.singletonList(compiled));
+                }
+            } catch (IOException e) {
+                LOGGER.warn("Binary dictionary broken – {}", e.getMessage());
+            }
+            try {
+                return new DictionarySnapshot(
+                        Collections.singletonList(loadCompiledDict()));
             } catch (NullPointerException e) {
-                force = true;
                 LOGGER.warn("Compiled dictionary not available – "
                         + "forcing reload of sources");
             }
         }
-        if (force) {
-            try {
-                LOGGER.warn(
-                        "Load (force = {} / folkLoaded = {}, derekoLoaded = {})",
-                        force, folkLoaded, derekoLoaded);
-                loadFolksDict(force);
-                loadDerekoDict(force);
+        try {
+            LOGGER.warn("Load (force = {})", force);
+            return new DictionarySnapshot(Arrays.asList(
+                    Lexicon.of(loadFolksDict()), Lexicon.of(loadDerekoDict())));
+        } catch (IOException e) {
+            e.printStackTrace();
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * @return the FOLK and DeReKo layers, loaded if necessary
+     */
+    private static DictionarySnapshot getBase() {
+        loadDictionary(false);
+        return base;
+    }
+
+    /**
+     * the index of the FOLK forms by frequency for fuzzy lookup, built if
+     * necessary
+     *
+     * @return the index
+     */
+    private static synchronized FuzzyIndex getFuzzyIndex() {
+        if (fuzzyIndex == null) {
+            long start = System.nanoTime();
+            try (InputStream folkSource = DictionaryNormalizer.class
+                    .getClassLoader().getResourceAsStream(FOLKS_PATH)) {
+                fuzzyIndex = new FuzzyIndex(FolkLexiconReader
+                        .entries(Objects.requireNonNull(folkSource,
+                                "FOLK dictionary not available!"))
+                        .collect(Collectors.toMap(
+                                FolkLexiconReader.Entry::getForm,
+                                FolkLexiconReader.Entry::getFrequency,
+                                Integer::sum)));
             } catch (IOException e) {
-                e.printStackTrace();
                 throw new RuntimeException(e);
             }
+            LOGGER.info("Fuzzy index: {} forms, {} ms", fuzzyIndex.size(),
+                    (System.nanoTime() - start) / 1000000);
         }
+        return fuzzyIndex;
+    }
+
+    /**
+     * iterate over the entries of the dictionary, loading it if necessary
+     *
+     * @param action
+     *     what to do with form and normalization
+     */
+    public static void forEachEntry(BiConsumer<String, String> action) {
+        getBase().forEach(action);
+    }
+
+    /**
+     * iterate over the entries of the dictionary without loading it for good,
+     * e.g. to hold it otherwise; if it is loaded already, it is used
+     *
+     * @param action
+     *     what to do with form and normalization
+     */
+    public static void readEntries(BiConsumer<String, String> action) {
+        DictionarySnapshot dict = base;
+        (dict != null ? dict : readDictionary(false)).forEach(action);
     }
 
     private final boolean keepCase;
+    private final boolean debug;
+    private final File overrides;
+
+    private volatile FuzzyIndex fuzzy;
+
+    // the current dictionary, replaced on reload:
+    private volatile DictionarySnapshot snapshot;
+    private volatile long overridesModified;
+    private volatile long nextCheck;
+    private final AtomicBoolean reloading = new AtomicBoolean();
+
+    /**
+     * make a {@link DictionaryNormalizer} with project-specific overrides
+     *
+     * @param keepCase
+     *     whether to keep upper case letters (and hence leave them untouched)
+     * @param debugging
+     *     whether to give more info
+     * @param overrides
+     *     a TSV file of forms and normalizations taking precedence over the
+     *     FOLK and DeReKo dictionaries, reloaded when it changes; or
+     *     {@code null}
+     */
+    public DictionaryNormalizer(boolean keepCase, boolean debugging,
+            File overrides) {
+        debug = debugging;
+        this.keepCase = keepCase;
+        this.overrides = overrides;
+        snapshot = getBase();
+        if (overrides != null) {
+            reload();
+        }
+    }
 
     /**
      * make a {@link DictionaryNormalizer}
@@ -239,9 +409,7 @@ public class DictionaryNormalizer implements WordNormalizer {
      *     whether to give more info
      */
     public DictionaryNormalizer(boolean keepCase, boolean debugging) {
-        debug = debugging;
-        this.keepCase = keepCase;
-        loadDictionary(false);
+        this(keepCase, debugging, null);
     }
 
     /**
@@ -251,13 +419,102 @@ public class DictionaryNormalizer implements WordNormalizer {
         this(true, false);
     }
 
+    /**
+     * whether to normalize unknown words like the nearest, most frequent
+     * FOLK form within a small edit distance, see {@link FuzzyIndex}
+     *
+     * @param useFuzzy
+     *     whether to look up unknown words fuzzily
+     */
+    public void setFuzzy(boolean useFuzzy) {
+        fuzzy = useFuzzy ? getFuzzyIndex() : null;
+    }
+
+    /**
+     * reload the overrides if their file has changed, keeping the current
+     * dictionary if it cannot be read
+     */
+    public void reload() {
+        if (overrides == null || !reloading.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            nextCheck = System.nanoTime() + CHECK_INTERVAL;
+            long modified = overrides.lastModified();
+            if (modified == overridesModified) {
+                return;
+            }
+            DictionarySnapshot baseSnapshot = getBase();
+            if (modified == 0L) {
+                LOGGER.warn("Overrides <{}> not available", overrides);
+                snapshot = baseSnapshot;
+            } else {
+                Lexicon overrideLayer = Lexicon.read(overrides);
+                snapshot = baseSnapshot.with(overrideLayer);
+                if (debug) {
+                    LOGGER.info("Loaded {} overrides from <{}>",
+                            overrideLayer.size(), overrides);
+                }
+            }
+            overridesModified = modified;
+        } catch (IOException e) {
+            LOGGER.warn("Overrides <{}> not loaded – {}", overrides,
+                    e.getMessage());
+        } finally {
+            reloading.set(false);
+        }
+    }
+
     @Override
     public String getNormalised(String in) {
-        String seek;
-        if (keepCase)
-            seek = in;
-        else
-            seek = in.toLowerCase();
-        return dict.getOrDefault(seek, in);
+        String normalised = lookup(in);
+        return normalised != null ? normalised : in;
+    }
+
+    @Override
+    public List<String> getNormalised(List<String> words) {
+        List<String> normalised = lookup(words);
+        for (int i = 0; i < normalised.size(); i++) {
+            if (normalised.get(i) == null) {
+                normalised.set(i, words.get(i));
+            }
+        }
+        return normalised;
+    }
+
+    /**
+     * look up each distinct form once
+     */
+    @Override
+    public List<String> lookup(List<String> words) {
+        Map<String, String> types = new HashMap<>();
+        List<String> normalised = new ArrayList<>(words.size());
+        for (String word : words) {
+            String normal = types.get(word);
+            if (normal == null && !types.containsKey(word)) {
+                normal = lookup(word);
+                types.put(word, normal);
+            }
+            normalised.add(normal);
+        }
+        return normalised;
+    }
+
+    @Override
+    public String lookup(String in) {
+        if (overrides != null && System.nanoTime() - nextCheck > 0) {
+            reload();
+        }
+        DictionarySnapshot dict = snapshot;
+        String normalised = dict.get(in, !keepCase);
+        FuzzyIndex fuzzyForms = fuzzy;
+        if (normalised == null && fuzzyForms != null) {
+            String nearest = fuzzyForms
+                    .nearest(keepCase ? in : in.toLowerCase());
+            if (nearest != null) {
+                normalised = dict.get(nearest, false);
+            }
+        }
+        return normalised;
     }
 }
@@ -0,0 +1,90 @@
+package de.ids.mannheim.clarin.teispeech.workflow;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiConsumer;
+
+/**
+ * an immutable normalization dictionary composed of {@link Lexicon} layers,
+ * e.g. project-specific overrides, then FOLK, then DeReKo: the first layer
+ * with an entry for a word wins. A new snapshot is made rather than a layer
+ * changed, so readers never need a lock.
+ *
+ * @author bfi
+ *
+ */
+final class DictionarySnapshot {
+
+    private final List<Lexicon> layers;
+
+    /**
+     * @param layers
+     *     the layers, in order of precedence
+     */
+    DictionarySnapshot(List<Lexicon> layers) {
+        this.layers = Collections.unmodifiableList(new ArrayList<>(layers));
+    }
+
+    /**
+     * a snapshot with another layer on top
+     *
+     * @param overlay
+     *     the new top layer
+     * @return the new snapshot
+     */
+    DictionarySnapshot with(Lexicon overlay) {
+        List<Lexicon> newLayers = new ArrayList<>(layers.size() + 1);
+        newLayers.add(overlay);
+        newLayers.addAll(layers);
+        return new DictionarySnapshot(newLayers);
+    }
+
+    /**
+     * look up a word in the layers
+     *
+     * @param word
+     *     the word
+     * @param lowerCase
+     *     whether to look up the word in lower case
+     * @return the normalization, or {@code null} if there is none
+     */
+    String get(String word, boolean lowerCase) {
+        for (Lexicon layer : layers) {
+            String normalised = layer.get(word, lowerCase);
+            if (normalised != null) {
+                return normalised;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return the layers, in order of precedence
+     */
+    List<Lexicon> getLayers() {
+        return layers;
+    }
+
+    /**
+     * iterate over the effective entries, i.e. those not hidden by a layer
+     * of higher precedence
+     *
+     * @param action
+     *     what to do with form and normalization
+     */
+    void forEach(BiConsumer<String, String> action) {
+        if (layers.size() == 1) {
+            layers.get(0).forEach(action);
+            return;
+        }
+        Map<String, String> merged = new LinkedHashMap<>();
+        for (Lexicon layer : layers) {
+            layer.forEach(merged::putIfAbsent);
+        }
+        merged.forEach(action);
+    }
+
+}
@@ -0,0 +1,170 @@
+package de.ids.mannheim.clarin.teispeech.workflow;
+
+import java.io.InputStream;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+/**
+ * reads the FOLK normalization lexicon in one forward pass, without building
+ * a DOM: for every {@code <entry>}, its {@code @form}, the {@code @corr} of
+ * its most frequent {@code <n>}, the first one if several are equally
+ * frequent, and the total frequency of the form.
+ *
+ * <p>
+ * The entries are a sequential stream that can be made parallel: parsing
+ * stays in one thread, while batches of entries are split off for the
+ * downstream operations.
+ *
+ * @author bfi
+ *
+ */
+final class FolkLexiconReader {
+
+    private static final XMLInputFactory FACTORY = XMLInputFactory
+            .newInstance();
+
+    static {
+        FACTORY.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        FACTORY.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES,
+                false);
+    }
+
+    private FolkLexiconReader() {
+    }
+
+    /**
+     * the entries of a FOLK lexicon; the stream must be consumed before the
+     * source is closed
+     *
+     * @param source
+     *     the lexicon XML
+     * @return the entries
+     */
+    static Stream<Entry> entries(InputStream source) {
+        XMLStreamReader reader;
+        try {
+            synchronized (FACTORY) {
+                reader = FACTORY.createXMLStreamReader(source);
+            }
+        } catch (XMLStreamException e) {
+            throw new RuntimeException(
+                    "Dictionary broken! – " + e.getMessage());
+        }
+        return StreamSupport.stream(new Spliterators.AbstractSpliterator<Entry>(
+                Long.MAX_VALUE, Spliterator.ORDERED | Spliterator.NONNULL) {
+            @Override
+            public boolean tryAdvance(Consumer<? super Entry> action) {
+                try {
+                    Entry entry = next(reader);
+                    if (entry == null) {
+                        reader.close();
+                        return false;
+                    }
+                    action.accept(entry);
+                    return true;
+                } catch (XMLStreamException e) {
+                    throw new RuntimeException(
+                            "Dictionary broken! – " + e.getMessage());
+                }
+            }
+        }, false);
+    }
+
+    /**
+     * read up to the end of the next entry
+     *
+     * @return the entry, or {@code null} at the end of the document
+     */
+    private static Entry next(XMLStreamReader reader)
+            throws XMLStreamException {
+        String form = null;
+        String best = null;
+        int bestFrequency = Integer.MIN_VALUE;
+        int total = 0;
+        while (reader.hasNext()) {
+            switch (reader.next()) {
+            case XMLStreamConstants.START_ELEMENT:
+                if ("entry".equals(reader.getLocalName())) {
+                    form = reader.getAttributeValue(null, "form");
+                    if (form == null) {
+                        form = "";
+                    }
+                    best = null;
+                    bestFrequency = Integer.MIN_VALUE;
+                    total = 0;
+                } else if (form != null
+                        && "n".equals(reader.getLocalName())) {
+                    int frequency = Integer
+                            .parseInt(reader.getAttributeValue(null, "freq"));
+                    total += frequency;
+                    if (frequency > bestFrequency) {
+                        bestFrequency = frequency;
+                        best = reader.getAttributeValue(null, "corr");
+                        if (best == null) {
+                            best = "";
+                        }
+                    }
+                }
+                break;
+            case XMLStreamConstants.END_ELEMENT:
+                if (form != null && "entry".equals(reader.getLocalName())) {
+                    if (best == null) {
+                        throw new XMLStreamException(String.format(
+                                "No normalization for «%s»", form),
+                                reader.getLocation());
+                    }
+                    return new Entry(form, best, total);
+                }
+                break;
+            default:
+                break;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * an entry of the lexicon
+     */
+    static final class Entry {
+        private final String form;
+        private final String normalization;
+        private final int frequency;
+
+        private Entry(String form, String normalization, int frequency) {
+            this.form = form;
+            this.normalization = normalization;
+            this.frequency = frequency;
+        }
+
+        /**
+         * @return the form
+         */
+        String getForm() {
+            return form;
+        }
+
+        /**
+         * @return the most frequent normalization
+         */
+        String getNormalization() {
+            return normalization;
+        }
+
+        /**
+         * @return the frequency of the form, over all normalizations
+         */
+        int getFrequency() {
+            return frequency;
+        }
+    }
+
+}
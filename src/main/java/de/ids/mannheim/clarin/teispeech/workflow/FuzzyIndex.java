@@ -0,0 +1,236 @@
+package de.ids.mannheim.clarin.teispeech.workflow;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * finds the dictionary forms within a small edit distance of a word with a
+ * symmetric deletion index: all strings made by deleting up to
+ * {@link #MAX_DISTANCE} characters from the beginning of each form are
+ * indexed, so that the candidates for a word are found by looking up its own
+ * deletions instead of comparing it to every form. Candidates are then
+ * checked with the real (optimal string alignment) distance and ranked by
+ * distance and frequency.
+ *
+ * <p>
+ * The index only keeps hash codes of the deletions, sorted together with the
+ * form numbers in a single {@code long[]}; collisions merely add candidates
+ * that fail the check.
+ *
+ * @author bfi
+ *
+ */
+final class FuzzyIndex {
+
+    /**
+     * the maximal edit distance
+     */
+    static final int MAX_DISTANCE = 2;
+
+    /**
+     * only deletions in the first characters are indexed; the rest of a word
+     * is compared when checking candidates
+     */
+    private static final int PREFIX_LENGTH = 7;
+
+    private final String[] forms;
+    private final int[] lengths;
+    private final int[] frequencies;
+    // hash code of deletion << 32 | form number, sorted:
+    private final long[] index;
+
+    /**
+     * build an index
+     *
+     * @param frequencies
+     *     the forms and their frequencies
+     */
+    FuzzyIndex(Map<String, Integer> frequencies) {
+        forms = frequencies.keySet().toArray(new String[0]);
+        lengths = new int[forms.length];
+        this.frequencies = new int[forms.length];
+        long[] entries = new long[forms.length * 8];
+        int size = 0;
+        for (int i = 0; i < forms.length; i++) {
+            lengths[i] = forms[i].length();
+            this.frequencies[i] = frequencies.get(forms[i]);
+            for (String deletion : deletions(forms[i], MAX_DISTANCE)) {
+                if (size == entries.length) {
+                    entries = Arrays.copyOf(entries, size * 2);
+                }
+                entries[size++] = (long) deletion.hashCode() << 32 | i;
+            }
+        }
+        index = Arrays.copyOf(entries, size);
+        Arrays.sort(index);
+    }
+
+    /**
+     * @return the number of indexed forms
+     */
+    int size() {
+        return forms.length;
+    }
+
+    /**
+     * the maximal edit distance for a word: none for words shorter than
+     * three characters, one for up to five characters
+     *
+     * @param word
+     *     the word
+     * @return the distance
+     */
+    static int maxDistance(String word) {
+        return word.length() < 3 ? 0
+                : word.length() <= 5 ? 1 : MAX_DISTANCE;
+    }
+
+    /**
+     * the forms near a word, nearest and then most frequent first
+     *
+     * @param word
+     *     the word
+     * @return the forms, possibly none
+     */
+    List<String> candidates(String word) {
+        int maxDistance = maxDistance(word);
+        if (maxDistance == 0) {
+            return new ArrayList<>();
+        }
+        // forms sharing a deletion, of suitable length:
+        int[] near = new int[16];
+        int count = 0;
+        for (String deletion : deletions(word, maxDistance)) {
+            long key = (long) deletion.hashCode() << 32;
+            int pos = Arrays.binarySearch(index, key);
+            if (pos < 0) {
+                pos = -pos - 1;
+            }
+            for (; pos < index.length && (index[pos] >>> 32) == (key >>> 32);
+                    pos++) {
+                int form = (int) index[pos];
+                if (Math.abs(lengths[form] - word.length()) <= maxDistance) {
+                    if (count == near.length) {
+                        near = Arrays.copyOf(near, count * 2);
+                    }
+                    near[count++] = form;
+                }
+            }
+        }
+        Arrays.sort(near, 0, count);
+        List<int[]> found = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            if (i > 0 && near[i] == near[i - 1]) {
+                continue;
+            }
+            int distance = distance(word, forms[near[i]], maxDistance);
+            if (distance <= maxDistance) {
+                found.add(new int[] { near[i], distance });
+            }
+        }
+        found.sort(Comparator.<int[]> comparingInt(f -> f[1])
+                .thenComparing(f -> -frequencies[f[0]]));
+        List<String> candidates = new ArrayList<>(found.size());
+        for (int[] f : found) {
+            candidates.add(forms[f[0]]);
+        }
+        return candidates;
+    }
+
+    /**
+     * the best form near a word
+     *
+     * @param word
+     *     the word
+     * @return the nearest, most frequent form, or {@code null} if there is
+     *     none
+     */
+    String nearest(String word) {
+        List<String> candidates = candidates(word);
+        return candidates.isEmpty() ? null : candidates.get(0);
+    }
+
+    /**
+     * the prefix of a word with up to {@code max} characters deleted,
+     * including the prefix itself
+     */
+    private static Set<String> deletions(String word, int max) {
+        Set<String> deletions = new HashSet<>();
+        String prefix = word.length() > PREFIX_LENGTH
+                ? word.substring(0, PREFIX_LENGTH)
+                : word;
+        deletions.add(prefix);
+        List<String> current = new ArrayList<>();
+        current.add(prefix);
+        for (int d = 0; d < max; d++) {
+            List<String> next = new ArrayList<>();
+            for (String s : current) {
+                for (int i = 0; i < s.length(); i++) {
+                    String deletion = s.substring(0, i) + s.substring(i + 1);
+                    if (deletions.add(deletion)) {
+                        next.add(deletion);
+                    }
+                }
+            }
+            current = next;
+        }
+        return deletions;
+    }
+
+    /**
+     * the optimal string alignment distance, i.e. Levenshtein distance with
+     * transpositions of neighbouring characters, computed only in the band
+     * of cells that can stay within {@code max}
+     *
+     * @return the distance, or {@code max + 1} if it exceeds {@code max}
+     */
+    static int distance(String a, String b, int max) {
+        int n = a.length();
+        int m = b.length();
+        int inf = max + 1;
+        if (Math.abs(n - m) > max) {
+            return inf;
+        }
+        int[] previous2 = new int[m + 1];
+        int[] previous = new int[m + 1];
+        int[] current = new int[m + 1];
+        Arrays.fill(previous2, inf);
+        for (int j = 0; j <= m; j++) {
+            previous[j] = Math.min(j, inf);
+        }
+        for (int i = 1; i <= n; i++) {
+            int from = Math.max(1, i - max);
+            int to = Math.min(m, i + max);
+            current[from - 1] = from == 1 ? Math.min(i, inf) : inf;
+            int rowMin = current[from - 1];
+            for (int j = from; j <= to; j++) {
+                int cost = a.charAt(i - 1) == b.charAt(j - 1) ? 0 : 1;
+                int d = Math.min(Math.min(previous[j] + 1, current[j - 1] + 1),
+                        previous[j - 1] + cost);
+                if (i > 1 && j > 1 && a.charAt(i - 1) == b.charAt(j - 2)
+                        && a.charAt(i - 2) == b.charAt(j - 1)) {
+                    d = Math.min(d, previous2[j - 2] + 1);
+                }
+                current[j] = Math.min(d, inf);
+                rowMin = Math.min(rowMin, current[j]);
+            }
+            if (to < m) {
+                current[to + 1] = inf;
+            }
+            if (rowMin > max) {
+                return inf;
+            }
+            int[] swap = previous2;
+            previous2 = previous;
+            previous = current;
+            current = swap;
+        }
+        return previous[m];
+    }
+
+}
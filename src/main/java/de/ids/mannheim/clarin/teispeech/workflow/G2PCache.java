@@ -0,0 +1,215 @@
+package de.ids.mannheim.clarin.teispeech.workflow;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+
+/**
+ * transcriptions of word forms, by locale and syllabification, kept in a
+ * file that several JVMs may share, e.g. all jobs of a batch; most word
+ * forms recur across documents, so that they need to be transcribed only
+ * once.
+ *
+ * <p>
+ * The file is only ever appended to, with lines of locale, syllabification
+ * ({@code 0} or {@code 1}), word form and transcription, separated by tabs.
+ * Appending takes an exclusive lock on the file, reading a shared one;
+ * before looking words up, the lines appended by other JVMs are read. Lines
+ * that are incomplete or malformed, e.g. after a crash, are skipped. There
+ * is one cache per file and JVM, see {@link #forFile(File)}.
+ *
+ * @author bfi
+ *
+ */
+public class G2PCache {
+
+    private static final Pattern TAB = Pattern.compile("\t");
+
+    private static final Map<File, G2PCache> CACHES = new ConcurrentHashMap<>();
+
+    private final File file;
+    private final Map<String, String> transcriptions = new ConcurrentHashMap<>();
+    /**
+     * how far the file has been read
+     */
+    private long position = 0;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    private G2PCache(File file) {
+        this.file = file;
+    }
+
+    /**
+     * the cache kept in a file, which is made when first written to
+     *
+     * @param file
+     *     the file
+     * @return the cache
+     */
+    public static G2PCache forFile(File file) {
+        return CACHES.computeIfAbsent(file.getAbsoluteFile(), G2PCache::new);
+    }
+
+    private static String key(String locale, boolean syllabified,
+            String word) {
+        return locale + (syllabified ? "\t1\t" : "\t0\t") + word;
+    }
+
+    /**
+     * look up transcriptions
+     *
+     * @param locale
+     *     the locale
+     * @param syllabified
+     *     whether the transcriptions are syllabified
+     * @param words
+     *     the word forms
+     * @return the transcriptions of the word forms in the cache
+     * @throws IOException
+     *     if the file cannot be read
+     */
+    public synchronized Map<String, String> get(String locale,
+            boolean syllabified, Collection<String> words) throws IOException {
+        if (file.length() > position) {
+            try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+                // released when the file is closed:
+                raf.getChannel().lock(0, Long.MAX_VALUE, true);
+                readNew(raf);
+            }
+        }
+        Map<String, String> ret = new HashMap<>();
+        for (String word : words) {
+            String transcription = transcriptions
+                    .get(key(locale, syllabified, word));
+            if (transcription != null) {
+                ret.put(word, transcription);
+                hits.incrementAndGet();
+            } else {
+                misses.incrementAndGet();
+            }
+        }
+        return ret;
+    }
+
+    /**
+     * add transcriptions, unless another JVM already did
+     *
+     * @param locale
+     *     the locale
+     * @param syllabified
+     *     whether the transcriptions are syllabified
+     * @param words
+     *     transcriptions by word form; word forms or transcriptions with
+     *     tabs or line breaks are not added
+     * @throws IOException
+     *     if the file cannot be written
+     */
+    public synchronized void put(String locale, boolean syllabified,
+            Map<String, String> words) throws IOException {
+        File dir = file.getAbsoluteFile().getParentFile();
+        if (dir != null && !dir.isDirectory() && !dir.mkdirs()) {
+            throw new IOException("Cannot make directory " + dir);
+        }
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            // released when the file is closed:
+            raf.getChannel().lock();
+            readNew(raf);
+            StringBuilder lines = new StringBuilder();
+            words.forEach((word, transcription) -> {
+                String key = key(locale, syllabified, word);
+                if (!transcriptions.containsKey(key)
+                        && word.indexOf('\t') < 0 && word.indexOf('\n') < 0
+                        && !transcription.isEmpty()
+                        && transcription.indexOf('\t') < 0
+                        && transcription.indexOf('\n') < 0) {
+                    transcriptions.put(key, transcription);
+                    lines.append(key).append('\t').append(transcription)
+                            .append('\n');
+                }
+            });
+            if (lines.length() > 0) {
+                if (raf.length() > position) {
+                    // end the incomplete line of a writer that crashed so
+                    // that it is malformed, with a field too many or empty:
+                    lines.insert(0, "\t\n");
+                }
+                raf.seek(raf.length());
+                raf.write(lines.toString().getBytes(StandardCharsets.UTF_8));
+                position = raf.length();
+            }
+        }
+    }
+
+    /**
+     * read the complete lines after {@link #position}
+     *
+     * @param raf
+     *     the file, locked
+     * @throws IOException
+     *     if it cannot be read
+     */
+    private void readNew(RandomAccessFile raf) throws IOException {
+        long length = raf.length();
+        if (length <= position) {
+            return;
+        }
+        byte[] bytes = new byte[(int) (length - position)];
+        raf.seek(position);
+        raf.readFully(bytes);
+        int end = bytes.length;
+        while (end > 0 && bytes[end - 1] != '\n') {
+            end--;
+        }
+        String text = new String(bytes, 0, end, StandardCharsets.UTF_8);
+        for (String line : text.split("\n")) {
+            String[] fields = TAB.split(line, -1);
+            if (fields.length == 4 && !fields[3].isEmpty()
+                    && ("0".equals(fields[1]) || "1".equals(fields[1]))) {
+                transcriptions.put(
+                        key(fields[0], "1".equals(fields[1]), fields[2]),
+                        fields[3]);
+            }
+        }
+        position += end;
+    }
+
+    /**
+     * @return the number of transcriptions in the cache
+     */
+    public int size() {
+        return transcriptions.size();
+    }
+
+    /**
+     * @return the number of word forms found in the cache
+     */
+    public long getHits() {
+        return hits.get();
+    }
+
+    /**
+     * @return the number of word forms not found in the cache
+     */
+    public long getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * @return the proportion of word forms found in the cache, 0 if there
+     *     were none
+     */
+    public double getHitRate() {
+        long total = hits.get() + misses.get();
+        return total == 0 ? 0 : (double) hits.get() / total;
+    }
+
+}
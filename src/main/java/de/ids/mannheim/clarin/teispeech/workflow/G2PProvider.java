@@ -0,0 +1,56 @@
+package de.ids.mannheim.clarin.teispeech.workflow;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * A G2PProvider transcribes words into phonetic transcriptions
+ * (grapheme-to-phoneme conversion), for {@link PseudoAlign}; see
+ * {@link G2PRegistry} for the providers per language.
+ *
+ * @author bfi
+ *
+ */
+public interface G2PProvider {
+
+    /**
+     * @return the name of the provider, for the revision description
+     */
+    String getName();
+
+    /**
+     * the locale to transcribe a language in
+     *
+     * @param language
+     *     a language code, possibly with region, e.g. {@code de-AT}
+     * @return the locale, or emptiness if the language is not supported
+     */
+    Optional<String> getLocale(String language);
+
+    /**
+     * transcribe words
+     *
+     * @param words
+     *     the words
+     * @param locale
+     *     the locale, as by {@link #getLocale(String)}
+     * @param syllabified
+     *     whether to separate syllables by full stops
+     * @return one transcription per word
+     * @throws IOException
+     *     if transcription failed
+     */
+    String[] getTranscription(List<String> words, String locale,
+            boolean syllabified) throws IOException;
+
+    /**
+     * whether the transcriptions are phonetic, as opposed to just the words
+     *
+     * @return by default, true
+     */
+    default boolean isPhonetic() {
+        return true;
+    }
+
+}
@@ -0,0 +1,195 @@
+package de.ids.mannheim.clarin.teispeech.workflow;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.korpora.useful.LangUtilities;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * the {@link G2PProvider}s per language, in the order they are tried.
+ *
+ * <p>
+ * By default, every language is transcribed by the BAS web service, German
+ * without it by the {@link GermanG2PProvider local rules}, and whatever
+ * failed falls back to counting letters; the providers can be chosen per
+ * language and for all others, by the names {@code bas}, {@code local} and
+ * {@code letters}. Counting letters is always the last resort, so that
+ * documents are aligned even on machines without network access.
+ *
+ * @author bfi
+ *
+ */
+public class G2PRegistry {
+
+    private final static Logger LOGGER = LoggerFactory
+            .getLogger(G2PRegistry.class.getName());
+
+    /**
+     * the key for languages without providers of their own
+     */
+    public static final String DEFAULT = "default";
+
+    /**
+     * the default providers
+     */
+    public static final List<String> DEFAULT_PROVIDERS = Arrays.asList("bas",
+            "local", "letters");
+
+    private final LetterG2PProvider letters = new LetterG2PProvider();
+    private final Map<String, G2PProvider> providers = new ConcurrentHashMap<>();
+    private final Map<String, List<G2PProvider>> chains = new ConcurrentHashMap<>();
+
+    /**
+     * make a registry with the {@link #DEFAULT_PROVIDERS}
+     */
+    public G2PRegistry() {
+        register(new BASG2PProvider());
+        register(new GermanG2PProvider());
+        register(letters);
+        setProviders(DEFAULT, DEFAULT_PROVIDERS);
+    }
+
+    /**
+     * register a provider by its name, replacing any of the same name, e.g.
+     * a {@link GermanG2PProvider} with a lexicon of its own
+     *
+     * @param provider
+     *     the provider
+     */
+    public void register(G2PProvider provider) {
+        providers.put(provider.getName(), provider);
+        chains.replaceAll((language, chain) -> {
+            List<G2PProvider> replaced = new ArrayList<>(chain);
+            replaced.replaceAll(p -> p.getName().equals(provider.getName())
+                    ? provider
+                    : p);
+            return replaced;
+        });
+    }
+
+    /**
+     * choose the providers for a language
+     *
+     * @param language
+     *     the language code, or {@link #DEFAULT}
+     * @param names
+     *     the names of the providers, in the order they are tried
+     */
+    public void setProviders(String language, List<String> names) {
+        List<G2PProvider> chain = new ArrayList<>();
+        for (String name : names) {
+            G2PProvider provider = providers.get(name);
+            if (provider == null) {
+                throw new IllegalArgumentException(String.format(
+                        "Unknown G2P provider «%s», known are: %s", name,
+                        providers.keySet()));
+            }
+            chain.add(provider);
+        }
+        chains.put(DEFAULT.equals(language) ? DEFAULT : normalize(language),
+                chain);
+    }
+
+    private static String normalize(String language) {
+        String[] components = language.split("[_-]+", 2);
+        components[0] = LangUtilities.toThree(components[0]);
+        return String.join("-", components);
+    }
+
+    /**
+     * the providers for a language, the most specific first: for
+     * {@code de-AT}, those of {@code deu-AT}, {@code deu} or the default
+     *
+     * @param language
+     *     the language code
+     * @return the providers
+     */
+    public List<G2PProvider> getProviders(String language) {
+        String key = normalize(language);
+        while (true) {
+            List<G2PProvider> chain = chains.get(key);
+            if (chain != null) {
+                return chain;
+            }
+            int cut = key.lastIndexOf('-');
+            if (cut < 0) {
+                return chains.get(DEFAULT);
+            }
+            key = key.substring(0, cut);
+        }
+    }
+
+    /**
+     * transcribe words with the first provider that supports the language
+     * and does not fail, counting letters if none does
+     *
+     * @param language
+     *     the language code
+     * @param words
+     *     the words
+     * @param syllabified
+     *     whether to separate syllables by full stops
+     * @return the transcription
+     */
+    public Transcription transcribe(String language, List<String> words,
+            boolean syllabified) {
+        for (G2PProvider provider : getProviders(language)) {
+            Optional<String> locale = provider.getLocale(language);
+            if (!locale.isPresent()) {
+                continue;
+            }
+            try {
+                LOGGER.info("Transcribing {} with {}", locale.get(),
+                        provider.getName());
+                String[] transcribed = provider.getTranscription(words,
+                        locale.get(), syllabified);
+                if (transcribed.length == words.size()) {
+                    return new Transcription(provider, transcribed);
+                }
+                LOGGER.warn("G2P with {} for {} returned {} instead of {} "
+                        + "words", provider.getName(), language,
+                        transcribed.length, words.size());
+            } catch (IOException | RuntimeException e) {
+                LOGGER.warn("G2P with {} for {} failed: {}",
+                        provider.getName(), language, e.getMessage());
+            }
+        }
+        return new Transcription(letters,
+                letters.getTranscription(words, language, syllabified));
+    }
+
+    /**
+     * words transcribed by a provider
+     */
+    public static class Transcription {
+        private final G2PProvider provider;
+        private final String[] words;
+
+        private Transcription(G2PProvider provider, String[] words) {
+            this.provider = provider;
+            this.words = words;
+        }
+
+        /**
+         * @return the provider that transcribed the words
+         */
+        public G2PProvider getProvider() {
+            return provider;
+        }
+
+        /**
+         * @return one transcription per word
+         */
+        public String[] getWords() {
+            return words;
+        }
+    }
+
+}
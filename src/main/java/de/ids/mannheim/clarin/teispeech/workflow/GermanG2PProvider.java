@@ -0,0 +1,423 @@
+package de.ids.mannheim.clarin.teispeech.workflow;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.regex.Pattern;
+
+import org.korpora.useful.LangUtilities;
+
+/**
+ * transcribes German locally, without network access: words from a lexicon
+ * are taken from it, all others transcribed by grapheme rules.
+ *
+ * <p>
+ * The rules cover the regular correspondences of German spelling (e.g.
+ * {@code sch}, {@code ch} after back vowels, diphthongs, final devoicing,
+ * vocalised {@code r}, unstressed {@code e}), and guess vowel length from
+ * the following letters; they are not meant to be exact, only to count
+ * (pseudo)phones and syllables about as the BAS service does. The built-in
+ * lexicon {@value #LEXICON} has frequent words the rules get wrong; more can
+ * be read from a file with lines of word and transcription, separated by a
+ * tab, with syllables separated by full stops.
+ *
+ * @author bfi
+ *
+ */
+public class GermanG2PProvider implements G2PProvider {
+
+    /**
+     * built-in lexicon
+     */
+    private static final String LEXICON = "g2p-deu.tsv";
+
+    private static final Pattern TAB = Pattern.compile("\t");
+    private static final Pattern NOT_LETTERS = Pattern.compile("[^\\p{L}]+");
+    private static final Pattern SYLLABLE_SEPARATOR = Pattern.compile("\\.");
+
+    private static final Map<String, String> BUILT_IN = new HashMap<>();
+
+    static {
+        try (InputStream lexicon = GermanG2PProvider.class.getClassLoader()
+                .getResourceAsStream(LEXICON)) {
+            read(new InputStreamReader(lexicon, StandardCharsets.UTF_8),
+                    BUILT_IN);
+        } catch (IOException e) {
+            throw new RuntimeException(e.getMessage());
+        }
+    }
+
+    private final Map<String, String> lexicon = new HashMap<>(BUILT_IN);
+
+    /**
+     * make a provider with the built-in lexicon
+     */
+    public GermanG2PProvider() {
+    }
+
+    /**
+     * make a provider with the built-in lexicon and one from a file, which
+     * takes precedence
+     *
+     * @param lexiconFile
+     *     the lexicon file
+     * @throws IOException
+     *     if the file cannot be read
+     */
+    public GermanG2PProvider(File lexiconFile) throws IOException {
+        read(Files.newBufferedReader(lexiconFile.toPath(),
+                StandardCharsets.UTF_8), lexicon);
+    }
+
+    private static void read(Reader input, Map<String, String> lexicon)
+            throws IOException {
+        try (BufferedReader reader = new BufferedReader(input)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] fields = TAB.split(line.trim());
+                if (fields.length == 2 && !line.startsWith("#")) {
+                    lexicon.put(fields[0].toLowerCase(Locale.GERMAN),
+                            fields[1]);
+                }
+            }
+        }
+    }
+
+    @Override
+    public String getName() {
+        return "local";
+    }
+
+    @Override
+    public Optional<String> getLocale(String language) {
+        String code = language.split("[_-]+")[0];
+        return "deu".equals(LangUtilities.toThree(code))
+                ? Optional.of("deu")
+                : Optional.empty();
+    }
+
+    @Override
+    public String[] getTranscription(List<String> words, String locale,
+            boolean syllabified) {
+        String[] ret = new String[words.size()];
+        for (int i = 0; i < ret.length; i++) {
+            String word = words.get(i).toLowerCase(Locale.GERMAN);
+            String trans = lexicon.get(word);
+            if (trans == null) {
+                List<String> syllables = new ArrayList<>();
+                // e.g. compounds with hyphens, or clitics:
+                for (String part : NOT_LETTERS.split(word)) {
+                    if (!part.isEmpty()) {
+                        syllables.add(transcribe(part));
+                    }
+                }
+                // e.g. numbers: count their signs
+                trans = syllables.isEmpty() ? word
+                        : String.join(".", syllables);
+            }
+            ret[i] = syllabified ? trans
+                    : SYLLABLE_SEPARATOR.matcher(trans).replaceAll("");
+        }
+        return ret;
+    }
+
+    /**
+     * a grapheme or group of graphemes, and its sound
+     */
+    private static class Segment {
+        private final String sound;
+        private final boolean vowel;
+
+        private Segment(String sound, boolean vowel) {
+            this.sound = sound;
+            this.vowel = vowel;
+        }
+    }
+
+    private static final String VOWELS = "aeiouäöüy";
+    private static final Pattern VOWEL_LETTERS = Pattern
+            .compile("[" + VOWELS + "]");
+
+    private static boolean isVowel(String word, int i) {
+        return i >= 0 && i < word.length()
+                && VOWELS.indexOf(word.charAt(i)) >= 0;
+    }
+
+    private static final String LONG_VOWELS = "aː eː iː oː uː ɛː øː yː yː";
+    private static final String SHORT_VOWELS = "a ɛ ɪ ɔ ʊ ɛ œ ʏ ʏ";
+
+    private static String vowel(char letter, boolean isLong) {
+        int i = VOWELS.indexOf(letter);
+        return (isLong ? LONG_VOWELS : SHORT_VOWELS).split(" ")[i];
+    }
+
+    /**
+     * transcribe a word by rules
+     *
+     * @param word
+     *     the word, in lower case letters only
+     * @return the transcription, syllabified
+     */
+    private static String transcribe(String word) {
+        List<Segment> segments = new ArrayList<>();
+        int i = 0;
+        while (i < word.length()) {
+            char c = word.charAt(i);
+            String rest = word.substring(i);
+            boolean initial = i == 0;
+            if (isVowel(word, i)) {
+                boolean first = !VOWEL_LETTERS.matcher(word.substring(0, i))
+                        .find();
+                boolean last = !VOWEL_LETTERS.matcher(rest.substring(1))
+                        .find();
+                if (initial) {
+                    segments.add(new Segment("ʔ", false));
+                }
+                String diphthong = diphthong(word, i);
+                if (diphthong != null) {
+                    segments.add(new Segment(diphthong, true));
+                    i += 2;
+                } else if (rest.startsWith("ie")) {
+                    segments.add(new Segment("iː", true));
+                    i += 2;
+                } else if (i + 1 < word.length()
+                        && word.charAt(i + 1) == c) {
+                    // „Saal“, „See“, „Boot“
+                    segments.add(new Segment(vowel(c, true), true));
+                    i += 2;
+                } else if (c == 'e' && last && !first
+                        && rest.matches("e(r|rn|rs|rt)?")) {
+                    // „Vater“, „andern“
+                    segments.add(new Segment(rest.length() == 1 ? "ə" : "ɐ",
+                            true));
+                    if (rest.length() > 2) {
+                        segments.add(new Segment(
+                                rest.endsWith("n") ? "n"
+                                        : rest.endsWith("s") ? "s" : "t",
+                                false));
+                    }
+                    i = word.length();
+                } else if (c == 'e' && (last && !first
+                        && rest.matches("e[lmnst]")
+                        || i == 1 && word.matches("[bg]e[^aeiouäöüyh].*")
+                                && word.length() > 4)) {
+                    // „haben“, „Esel“, „Hauses“; „gemacht“, „bekannt“
+                    segments.add(new Segment("ə", true));
+                    i++;
+                } else {
+                    segments.add(new Segment(vowel(c, isLong(word, i)), true));
+                    i++;
+                }
+                continue;
+            }
+            boolean finalPosition = i + 1 >= word.length()
+                    || !isVowel(word, i + 1) && "lr".indexOf(
+                            word.charAt(i + 1)) < 0;
+            if (rest.startsWith("tsch")) {
+                segments.add(new Segment("tʃ", false));
+                i += 4;
+            } else if (rest.startsWith("sch")) {
+                segments.add(new Segment("ʃ", false));
+                i += 3;
+            } else if (rest.startsWith("chs")) {
+                segments.add(new Segment("ks", false));
+                i += 3;
+            } else if (rest.startsWith("ch")) {
+                String before = i > 0 ? word.substring(0, i) : "";
+                segments.add(new Segment(initial ? "k"
+                        : before.matches(".*(a|o|u|au)")
+                                && !before.endsWith("eu")
+                                && !before.endsWith("äu") ? "x" : "ç",
+                        false));
+                i += 2;
+            } else if (rest.startsWith("ck")) {
+                segments.add(new Segment("k", false));
+                i += 2;
+            } else if (rest.startsWith("ph")) {
+                segments.add(new Segment("f", false));
+                i += 2;
+            } else if (rest.startsWith("th") || rest.startsWith("dt")) {
+                segments.add(new Segment("t", false));
+                i += 2;
+            } else if (rest.startsWith("qu")) {
+                segments.add(new Segment("kv", false));
+                i += 2;
+            } else if (rest.startsWith("ng")) {
+                segments.add(new Segment("ŋ", false));
+                i += 2;
+            } else if (rest.startsWith("nk")) {
+                segments.add(new Segment("ŋ", false));
+                i++;
+            } else if (rest.startsWith("tz")) {
+                segments.add(new Segment("ts", false));
+                i += 2;
+            } else if (rest.startsWith("tion")) {
+                segments.add(new Segment("ts", false));
+                segments.add(new Segment("j", false));
+                segments.add(new Segment("oː", true));
+                segments.add(new Segment("n", false));
+                i += 4;
+            } else if (initial
+                    && (rest.startsWith("sp") || rest.startsWith("st"))) {
+                segments.add(new Segment("ʃ", false));
+                i++;
+            } else if (i + 1 < word.length() && word.charAt(i + 1) == c) {
+                // doubled consonants are pronounced once
+                i++;
+            } else {
+                String sound;
+                switch (c) {
+                case 'b':
+                    sound = finalPosition ? "p" : "b";
+                    break;
+                case 'd':
+                    sound = finalPosition ? "t" : "d";
+                    break;
+                case 'g':
+                    sound = finalPosition ? (word.endsWith("ig")
+                            && i == word.length() - 1 ? "ç" : "k") : "g";
+                    break;
+                case 's':
+                    sound = isVowel(word, i + 1)
+                            && (initial || isVowel(word, i - 1)
+                                    || "lmnr".indexOf(word.charAt(i - 1)) >= 0)
+                                            ? "z" : "s";
+                    break;
+                case 'ß':
+                    sound = "s";
+                    break;
+                case 'z':
+                    sound = "ts";
+                    break;
+                case 'c':
+                    sound = rest.matches("c[eiäy].*") ? "ts" : "k";
+                    break;
+                case 'v':
+                    sound = "f";
+                    break;
+                case 'w':
+                    sound = "v";
+                    break;
+                case 'x':
+                    sound = "ks";
+                    break;
+                case 'r':
+                    // „dort“, „Jahr“
+                    sound = finalPosition && (isVowel(word, i - 1)
+                            || i > 1 && word.charAt(i - 1) == 'h'
+                                    && isVowel(word, i - 2)) ? "ɐ̯" : "ʁ";
+                    break;
+                case 'h':
+                    // after vowels, h only marks length: „Bahn“, „gehen“
+                    sound = isVowel(word, i - 1) ? "" : "h";
+                    break;
+                default:
+                    sound = String.valueOf(c);
+                }
+                if (!sound.isEmpty()) {
+                    segments.add(new Segment(sound, false));
+                }
+                i++;
+            }
+        }
+        return syllabify(segments);
+    }
+
+    /**
+     * the diphthong starting at a position
+     *
+     * @param word
+     *     the word
+     * @param i
+     *     the position
+     * @return the diphthong or {@code null}
+     */
+    private static String diphthong(String word, int i) {
+        if (i + 1 >= word.length()) {
+            return null;
+        }
+        switch (word.substring(i, i + 2)) {
+        case "ei":
+        case "ai":
+        case "ey":
+        case "ay":
+            return "aɪ̯";
+        case "eu":
+        case "äu":
+            return "ɔʏ̯";
+        case "au":
+            return "aʊ̯";
+        default:
+            return null;
+        }
+    }
+
+    /**
+     * whether a vowel is long: in open syllables, i.e. before a vowel or a
+     * single consonant followed by a vowel, and before ß
+     *
+     * @param word
+     *     the word
+     * @param i
+     *     the position of the vowel
+     * @return whether it is long
+     */
+    private static boolean isLong(String word, int i) {
+        if (i + 1 >= word.length()) {
+            // „da“, „so“; but „je“ is not „jeh“
+            return word.charAt(i) != 'e' || word.length() <= 3;
+        }
+        char next = word.charAt(i + 1);
+        if (isVowel(word, i + 1) || next == 'ß' || next == 'h') {
+            return true;
+        }
+        if ("xzq".indexOf(next) >= 0 || word.startsWith("ch", i + 1)
+                || word.startsWith("sch", i + 1)
+                || word.startsWith("ng", i + 1)) {
+            return false;
+        }
+        return isVowel(word, i + 2);
+    }
+
+    /**
+     * join segments, separating syllables before the last consonant between
+     * two vowels, and between vowels in hiatus
+     *
+     * @param segments
+     *     the segments of a word
+     * @return the syllabified transcription
+     */
+    private static String syllabify(List<Segment> segments) {
+        StringBuilder ret = new StringBuilder();
+        int lastVowel = -1;
+        for (int s = 0; s < segments.size(); s++) {
+            Segment segment = segments.get(s);
+            if (segment.vowel) {
+                if (lastVowel >= 0) {
+                    // boundary before the last consonant, if any
+                    int boundary = s - 1 > lastVowel ? s - 1 : s;
+                    int insertAt = ret.length();
+                    for (int k = s - 1; k >= boundary; k--) {
+                        insertAt -= segments.get(k).sound.length();
+                    }
+                    ret.insert(insertAt, '.');
+                }
+                lastVowel = s;
+            }
+            ret.append(segment.sound);
+        }
+        return ret.toString();
+    }
+
+}
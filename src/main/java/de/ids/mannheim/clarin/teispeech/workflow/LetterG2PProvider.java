@@ -0,0 +1,36 @@
+package de.ids.mannheim.clarin.teispeech.workflow;
+
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * "transcribes" words as they are written, so that their letters are
+ * counted instead of phones; supports every language and never fails.
+ *
+ * @author bfi
+ *
+ */
+public class LetterG2PProvider implements G2PProvider {
+
+    @Override
+    public String getName() {
+        return "letters";
+    }
+
+    @Override
+    public Optional<String> getLocale(String language) {
+        return Optional.of(language);
+    }
+
+    @Override
+    public String[] getTranscription(List<String> words, String locale,
+            boolean syllabified) {
+        return words.toArray(new String[0]);
+    }
+
+    @Override
+    public boolean isPhonetic() {
+        return false;
+    }
+
+}
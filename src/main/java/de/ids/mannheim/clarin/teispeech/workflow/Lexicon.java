@@ -0,0 +1,95 @@
+package de.ids.mannheim.clarin.teispeech.workflow;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.BiConsumer;
+
+/**
+ * an immutable layer of a normalization dictionary, see
+ * {@link DictionarySnapshot}
+ *
+ * @author bfi
+ *
+ */
+interface Lexicon {
+
+    /**
+     * look up a word
+     *
+     * @param word
+     *     the word
+     * @param lowerCase
+     *     whether to look up the word in lower case
+     * @return the normalization, or {@code null} if there is none
+     */
+    String get(String word, boolean lowerCase);
+
+    /**
+     * @return the number of entries
+     */
+    int size();
+
+    /**
+     * iterate over all entries
+     *
+     * @param action
+     *     what to do with form and normalization
+     */
+    void forEach(BiConsumer<String, String> action);
+
+    /**
+     * a lexicon backed by a copy of a map
+     *
+     * @param dict
+     *     the map from forms to normalizations
+     * @return the lexicon
+     */
+    static Lexicon of(Map<String, String> dict) {
+        Map<String, String> entries = Collections
+                .unmodifiableMap(new HashMap<>(dict));
+        return new Lexicon() {
+            @Override
+            public String get(String word, boolean lowerCase) {
+                return entries.get(lowerCase ? word.toLowerCase() : word);
+            }
+
+            @Override
+            public int size() {
+                return entries.size();
+            }
+
+            @Override
+            public void forEach(BiConsumer<String, String> action) {
+                entries.forEach(action);
+            }
+        };
+    }
+
+    /**
+     * a lexicon from a TSV file: lines of form and normalization, separated
+     * by a tab
+     *
+     * @param file
+     *     the file, in UTF-8
+     * @return the lexicon
+     * @throws IOException
+     *     if the file cannot be read
+     */
+    static Lexicon read(File file) throws IOException {
+        Map<String, String> entries = new HashMap<>();
+        for (String line : Files.readAllLines(file.toPath(),
+                StandardCharsets.UTF_8)) {
+            String[] fields = line.split("\t");
+            if (fields.length >= 2 && !fields[0].isEmpty()) {
+                entries.put(fields[0], fields[1]);
+            }
+        }
+        return of(entries);
+    }
+
+}
@@ -0,0 +1,322 @@
+package de.ids.mannheim.clarin.teispeech.workflow;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * a dictionary as a minimal acyclic finite-state transducer from forms to
+ * their normalizations: common prefixes and suffixes of the entries are
+ * stored only once, and a lookup takes time linear in the length of form and
+ * normalization.
+ *
+ * <p>
+ * The transducer is encoded as the minimal automaton accepting
+ * <em>form</em>{@link #SEPARATOR}<em>output</em> for every entry. As every
+ * form has exactly one normalization, the path after the separator is unique,
+ * and it is read off as the output. The output does not spell out the
+ * normalization, which would make the right language of every state unique
+ * and prevent sharing suffixes, but how to derive it from the form: whether
+ * to capitalize it, how many characters to remove at its end, and what to
+ * append. Most entries thus end in one of a few outputs. States are stored as
+ * ranges of arcs sorted by label in three arrays.
+ *
+ * @author bfi
+ *
+ */
+public final class LexiconTransducer {
+
+    /**
+     * separates forms and normalizations; may not occur in forms
+     */
+    private static final char SEPARATOR = '\t';
+
+    // arcs of state s: firstArc[s] … firstArc[s + 1] - 1
+    private final int[] firstArc;
+    private final char[] labels;
+    private final int[] targets;
+    private final int size;
+
+    private LexiconTransducer(int[] firstArc, char[] labels, int[] targets,
+            int size) {
+        this.firstArc = firstArc;
+        this.labels = labels;
+        this.targets = targets;
+        this.size = size;
+    }
+
+    /**
+     * build a transducer
+     *
+     * @param dict
+     *     the dictionary; forms must not contain tabs
+     * @return the transducer
+     */
+    public static LexiconTransducer build(Map<String, String> dict) {
+        String[] entries = new String[dict.size()];
+        int i = 0;
+        for (Map.Entry<String, String> entry : dict.entrySet()) {
+            if (entry.getKey().indexOf(SEPARATOR) >= 0) {
+                throw new IllegalArgumentException(String.format(
+                        "Form «%s» contains a tab!", entry.getKey()));
+            }
+            entries[i++] = entry.getKey() + SEPARATOR
+                    + encode(entry.getKey(), entry.getValue());
+        }
+        Arrays.sort(entries);
+        Builder builder = new Builder();
+        for (String entry : entries) {
+            builder.add(entry);
+        }
+        return builder.finish(entries.length);
+    }
+
+    /**
+     * look up a form
+     *
+     * @param form
+     *     the form
+     * @return its normalization, or {@code null} if there is none
+     */
+    public String get(CharSequence form) {
+        int state = 0;
+        for (int i = 0; i < form.length(); i++) {
+            state = step(state, form.charAt(i));
+            if (state < 0) {
+                return null;
+            }
+        }
+        state = step(state, SEPARATOR);
+        if (state < 0) {
+            return null;
+        }
+        StringBuilder output = new StringBuilder();
+        while (firstArc[state] < firstArc[state + 1]) {
+            int arc = firstArc[state];
+            output.append(labels[arc]);
+            state = targets[arc];
+        }
+        return decode(form.toString(), output);
+    }
+
+    /**
+     * encode a normalization relative to its form: capitalization flag,
+     * number of characters to remove, suffix to append
+     */
+    private static String encode(String form, String normalization) {
+        String capitalized = capitalize(form);
+        int plain = commonPrefix(form, normalization);
+        int capital = commonPrefix(capitalized, normalization);
+        boolean capitalize = capital > plain;
+        String base = capitalize ? capitalized : form;
+        int prefix = Math.max(plain, capital);
+        return new StringBuilder().append(capitalize ? '1' : '0')
+                .append((char) (base.length() - prefix))
+                .append(normalization, prefix, normalization.length())
+                .toString();
+    }
+
+    private static String decode(String form, CharSequence output) {
+        String base = output.charAt(0) == '1' ? capitalize(form) : form;
+        return base.substring(0, base.length() - output.charAt(1))
+                + output.subSequence(2, output.length());
+    }
+
+    private static String capitalize(String form) {
+        if (form.isEmpty()) {
+            return form;
+        }
+        int first = form.codePointAt(0);
+        return new StringBuilder()
+                .appendCodePoint(Character.toUpperCase(first))
+                .append(form, Character.charCount(first), form.length())
+                .toString();
+    }
+
+    private static int commonPrefix(String a, String b) {
+        int i = 0;
+        while (i < a.length() && i < b.length()
+                && a.charAt(i) == b.charAt(i)) {
+            i++;
+        }
+        return i;
+    }
+
+    /**
+     * follow an arc
+     *
+     * @return the target state, or -1 if there is no arc
+     */
+    private int step(int state, char label) {
+        int arc = Arrays.binarySearch(labels, firstArc[state],
+                firstArc[state + 1], label);
+        return arc < 0 ? -1 : targets[arc];
+    }
+
+    /**
+     * @return the number of entries
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return the number of states
+     */
+    public int stateCount() {
+        return firstArc.length - 1;
+    }
+
+    /**
+     * @return the number of arcs
+     */
+    public int arcCount() {
+        return labels.length;
+    }
+
+    /**
+     * a state during construction
+     */
+    private static final class Node {
+        private char[] labels = new char[0];
+        private Node[] targets = new Node[0];
+        private boolean isFinal;
+        private int hash;
+
+        private Node last() {
+            return targets[targets.length - 1];
+        }
+
+        private void add(char label, Node target) {
+            labels = Arrays.copyOf(labels, labels.length + 1);
+            targets = Arrays.copyOf(targets, targets.length + 1);
+            labels[labels.length - 1] = label;
+            targets[targets.length - 1] = target;
+        }
+
+        /**
+         * compute the hash code once the state is complete; targets are
+         * registered, so they are compared by identity
+         */
+        private void freeze() {
+            int h = Boolean.hashCode(isFinal);
+            for (int i = 0; i < labels.length; i++) {
+                h = 31 * (31 * h + labels[i])
+                        + System.identityHashCode(targets[i]);
+            }
+            hash = h;
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof Node)) {
+                return false;
+            }
+            Node other = (Node) obj;
+            if (isFinal != other.isFinal
+                    || !Arrays.equals(labels, other.labels)) {
+                return false;
+            }
+            for (int i = 0; i < targets.length; i++) {
+                if (targets[i] != other.targets[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    /**
+     * incremental construction of the minimal automaton from sorted strings
+     * (Daciuk et al. 2000)
+     */
+    private static final class Builder {
+        private final Node root = new Node();
+        private final Map<Node, Node> register = new HashMap<>();
+        private String previous = "";
+
+        private void add(String word) {
+            int prefix = 0;
+            Node state = root;
+            while (prefix < word.length() && prefix < previous.length()
+                    && word.charAt(prefix) == previous.charAt(prefix)) {
+                state = state.last();
+                prefix++;
+            }
+            if (state.targets.length > 0) {
+                replaceOrRegister(state);
+            }
+            for (int i = prefix; i < word.length(); i++) {
+                Node next = new Node();
+                state.add(word.charAt(i), next);
+                state = next;
+            }
+            state.isFinal = true;
+            previous = word;
+        }
+
+        /**
+         * replace the last child of a state, and recursively its last
+         * children, by an equivalent registered state, if any
+         */
+        private void replaceOrRegister(Node state) {
+            Node child = state.last();
+            if (child.targets.length > 0) {
+                replaceOrRegister(child);
+            }
+            child.freeze();
+            Node registered = register.putIfAbsent(child, child);
+            if (registered != null) {
+                state.targets[state.targets.length - 1] = registered;
+            }
+        }
+
+        /**
+         * minimize the last path and number the states, root first
+         */
+        private LexiconTransducer finish(int size) {
+            if (root.targets.length > 0) {
+                replaceOrRegister(root);
+            }
+            register.clear();
+            Map<Node, Integer> numbers = new IdentityHashMap<>();
+            List<Node> states = new ArrayList<>();
+            numbers.put(root, 0);
+            states.add(root);
+            int arcCount = 0;
+            for (int s = 0; s < states.size(); s++) {
+                for (Node target : states.get(s).targets) {
+                    arcCount++;
+                    if (!numbers.containsKey(target)) {
+                        numbers.put(target, states.size());
+                        states.add(target);
+                    }
+                }
+            }
+            int[] firstArc = new int[states.size() + 1];
+            char[] labels = new char[arcCount];
+            int[] targets = new int[arcCount];
+            int arc = 0;
+            for (int s = 0; s < states.size(); s++) {
+                Node state = states.get(s);
+                firstArc[s] = arc;
+                System.arraycopy(state.labels, 0, labels, arc,
+                        state.labels.length);
+                for (Node target : state.targets) {
+                    targets[arc++] = numbers.get(target);
+                }
+            }
+            firstArc[states.size()] = arc;
+            return new LexiconTransducer(firstArc, labels, targets, size);
+        }
+    }
+
+}
@@ -0,0 +1,118 @@
+package de.ids.mannheim.clarin.teispeech.workflow;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * what {@link TEINormalizer#normalize} did to a document, in aggregate
+ *
+ * @author bfi
+ *
+ */
+public class NormalizationReport {
+
+    /**
+     * how many unknown forms {@link #toString()} lists
+     */
+    public static final int TOP_UNKNOWN = 10;
+
+    private int tokens;
+    private int changed;
+    private int unchanged;
+    private int unknown;
+    private int renormalized;
+    private final Map<String, Integer> unknownForms = new HashMap<>();
+
+    /**
+     * count a token
+     *
+     * @param form
+     *     the form
+     * @param normal
+     *     the normalized form, or {@code null} if there is none
+     * @param known
+     *     whether the normalizer knew the form
+     * @param before
+     *     the normalization the token had before, or the empty string
+     */
+    void count(String form, String normal, boolean known, String before) {
+        tokens++;
+        if (!known) {
+            unknown++;
+            unknownForms.merge(form, 1, Integer::sum);
+        } else if (form.equals(normal)) {
+            unchanged++;
+        } else {
+            changed++;
+        }
+        if (normal != null && !before.isEmpty() && !before.equals(normal)) {
+            renormalized++;
+        }
+    }
+
+    /**
+     * @return the number of tokens normalized
+     */
+    public int getTokens() {
+        return tokens;
+    }
+
+    /**
+     * @return the number of known tokens whose normalization differs
+     */
+    public int getChanged() {
+        return changed;
+    }
+
+    /**
+     * @return the number of known tokens that are already normal
+     */
+    public int getUnchanged() {
+        return unchanged;
+    }
+
+    /**
+     * @return the number of tokens unknown to the normalizer
+     */
+    public int getUnknown() {
+        return unknown;
+    }
+
+    /**
+     * @return the number of tokens whose previous normalization has been
+     *     replaced by a different one
+     */
+    public int getRenormalized() {
+        return renormalized;
+    }
+
+    /**
+     * the most frequent unknown forms
+     *
+     * @param n
+     *     how many
+     * @return forms and frequencies, most frequent first
+     */
+    public List<Map.Entry<String, Integer>> getTopUnknown(int n) {
+        return unknownForms.entrySet().stream()
+                .sorted(Map.Entry.<String, Integer> comparingByValue()
+                        .reversed()
+                        .thenComparing(Map.Entry.comparingByKey()))
+                .limit(n).collect(Collectors.toList());
+    }
+
+    @Override
+    public String toString() {
+        String top = getTopUnknown(TOP_UNKNOWN).stream()
+                .map(e -> String.format("%s ×%d", e.getKey(), e.getValue()))
+                .collect(Collectors.joining(", "));
+        return String.format(
+                "%d tokens: %d changed, %d unchanged, %d unknown%s, "
+                        + "%d renormalized",
+                tokens, changed, unchanged, unknown,
+                top.isEmpty() ? "" : " (" + top + ")", renormalized);
+    }
+
+}
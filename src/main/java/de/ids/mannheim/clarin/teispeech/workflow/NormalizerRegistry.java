@@ -0,0 +1,211 @@
+package de.ids.mannheim.clarin.teispeech.workflow;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * the {@link WordNormalizer}s per language, by three-letter ISO code.
+ *
+ * <p>
+ * A normalizer is only made when it is first asked for, i.e. when the first
+ * document containing its language is normalized, and then shared by all
+ * threads and documents using the registry. German is registered with the
+ * {@link DictionaryNormalizer}, or the {@link TransducerNormalizer}; other
+ * languages can be registered with a lexicon file or any normalizer.
+ *
+ * @author bfi
+ *
+ */
+public class NormalizerRegistry {
+
+    private final static Logger LOGGER = LoggerFactory
+            .getLogger(NormalizerRegistry.class.getName());
+
+    private final boolean keepCase;
+    private final Map<String, Supplier<WordNormalizer>> factories = new ConcurrentHashMap<>();
+    private final Map<String, WordNormalizer> normalizers = new ConcurrentHashMap<>();
+    private final Map<String, LoadInfo> loadInfos = new ConcurrentHashMap<>();
+
+    /**
+     * make a registry with German normalization
+     *
+     * @param keepCase
+     *     whether normalizers keep upper case letters (and hence leave them
+     *     untouched)
+     */
+    public NormalizerRegistry(boolean keepCase) {
+        this.keepCase = keepCase;
+        register("deu", () -> new DictionaryNormalizer(keepCase, false));
+    }
+
+    /**
+     * register a normalizer for a language, replacing any registered before
+     * unless it is already in use
+     *
+     * @param language
+     *     the three-letter language code
+     * @param factory
+     *     makes the normalizer when it is first needed
+     */
+    public void register(String language,
+            Supplier<WordNormalizer> factory) {
+        factories.put(language, factory);
+    }
+
+    /**
+     * normalize German with a {@link TransducerNormalizer}, which holds the
+     * dictionary in much less heap than the {@link DictionaryNormalizer}, but
+     * without overrides or fuzzy lookup
+     */
+    public void registerTransducer() {
+        register("deu", () -> new TransducerNormalizer(keepCase));
+    }
+
+    /**
+     * register a normalization lexicon for a language
+     *
+     * @param language
+     *     the three-letter language code
+     * @param lexicon
+     *     a UTF-8 file of lines of form and normalization, separated by a
+     *     tab; forms are looked up in lower case unless case is kept, by the
+     *     rules of the language, e.g. Turkish I → ı and İ → i
+     */
+    public void registerLexicon(String language, File lexicon) {
+        Locale locale = toLocale(language);
+        register(language, () -> {
+            Lexicon dict;
+            try {
+                dict = Lexicon.read(lexicon);
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+            return new WordNormalizer() {
+                @Override
+                public String getNormalised(String word) {
+                    String normalised = lookup(word);
+                    return normalised != null ? normalised : word;
+                }
+
+                @Override
+                public String lookup(String word) {
+                    return dict.get(keepCase ? word : word.toLowerCase(locale),
+                            false);
+                }
+
+                @Override
+                public List<String> lookup(List<String> words) {
+                    return words.stream().map(this::lookup)
+                            .collect(Collectors.toList());
+                }
+            };
+        });
+    }
+
+    /**
+     * the locale of a language, with the two-letter code if there is one, as
+     * only these select the special lower case rules of
+     * {@link String#toLowerCase(Locale)}
+     *
+     * @param language
+     *     the language code
+     * @return the locale
+     */
+    private static Locale toLocale(String language) {
+        Locale locale = Locale.forLanguageTag(language);
+        for (String code : Locale.getISOLanguages()) {
+            Locale candidate = new Locale(code);
+            if (candidate.getISO3Language().equals(locale.getLanguage())) {
+                return candidate;
+            }
+        }
+        return locale;
+    }
+
+    /**
+     * @return the languages with a registered normalizer
+     */
+    public Set<String> getLanguages() {
+        return factories.keySet();
+    }
+
+    /**
+     * the normalizer for a language, made if necessary
+     *
+     * @param language
+     *     the three-letter language code
+     * @return the normalizer, or {@code null} if none is registered
+     */
+    public WordNormalizer get(String language) {
+        Supplier<WordNormalizer> factory = factories.get(language);
+        if (factory == null) {
+            return null;
+        }
+        return normalizers.computeIfAbsent(language, lang -> {
+            Runtime runtime = Runtime.getRuntime();
+            long memory = runtime.totalMemory() - runtime.freeMemory();
+            long start = System.nanoTime();
+            WordNormalizer normalizer = factory.get();
+            LoadInfo info = new LoadInfo(
+                    (System.nanoTime() - start) / 1000000,
+                    runtime.totalMemory() - runtime.freeMemory() - memory);
+            loadInfos.put(lang, info);
+            LOGGER.info("Loaded normalizer for {}: {}", lang, info);
+            return normalizer;
+        });
+    }
+
+    /**
+     * @return load time and memory of the normalizers made so far, by
+     *     language
+     */
+    public Map<String, LoadInfo> getLoadInfos() {
+        return new TreeMap<>(loadInfos);
+    }
+
+    /**
+     * what loading a normalizer cost
+     */
+    public static class LoadInfo {
+        private final long millis;
+        private final long bytes;
+
+        private LoadInfo(long millis, long bytes) {
+            this.millis = millis;
+            this.bytes = bytes;
+        }
+
+        /**
+         * @return the load time in milliseconds
+         */
+        public long getMillis() {
+            return millis;
+        }
+
+        /**
+         * @return the growth of the used heap while loading in bytes; an
+         *     estimate, as garbage and other threads are counted too
+         */
+        public long getBytes() {
+            return bytes;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%d ms, ~%.1f MB heap", millis,
+                    bytes / 1048576d);
+        }
+    }
+
+}
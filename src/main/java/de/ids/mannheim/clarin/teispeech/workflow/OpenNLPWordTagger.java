@@ -0,0 +1,140 @@
+package de.ids.mannheim.clarin.teispeech.workflow;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import opennlp.tools.lemmatizer.DictionaryLemmatizer;
+import opennlp.tools.lemmatizer.Lemmatizer;
+import opennlp.tools.lemmatizer.LemmatizerME;
+import opennlp.tools.lemmatizer.LemmatizerModel;
+import opennlp.tools.postag.POSModel;
+import opennlp.tools.postag.POSTagger;
+import opennlp.tools.postag.POSTaggerME;
+
+/**
+ * tags with an OpenNLP part-of-speech model and, optionally, lemmatizer,
+ * within the JVM.
+ *
+ * <p>
+ * Models are loaded once per file and shared; {@link POSTaggerME} and
+ * {@link LemmatizerME} are not thread-safe, so every thread gets its own.
+ * A lemmatizer file whose name ends in {@value #MODEL_EXTENSION} is a
+ * {@link LemmatizerModel}, any other a dictionary for the
+ * {@link DictionaryLemmatizer}, with lines of word, part of speech and
+ * lemma, separated by tabs. Words without lemma keep their form, as with the
+ * TreeTagger.
+ *
+ * @author bfi
+ *
+ */
+public class OpenNLPWordTagger implements WordTagger {
+
+    /**
+     * extension of lemmatizer models in OpenNLP format
+     */
+    public static final String MODEL_EXTENSION = ".bin";
+
+    /**
+     * what the OpenNLP lemmatizers return for unknown words
+     */
+    private static final String NO_LEMMA = "O";
+
+    private static final Map<File, POSModel> POS_MODELS = new ConcurrentHashMap<>();
+    private static final Map<File, Object> LEMMATIZER_MODELS = new ConcurrentHashMap<>();
+
+    private final String model;
+    private final ThreadLocal<POSTagger> posTagger;
+    private final ThreadLocal<Lemmatizer> lemmatizer;
+
+    /**
+     * make a tagger, loading the models unless already loaded
+     *
+     * @param posModel
+     *            the part-of-speech model in OpenNLP format
+     * @param lemmatizerModel
+     *            the lemmatizer model or dictionary; {@code null} to use
+     *            the forms as lemmas
+     * @throws IOException
+     *             if a model is unavailable or broken
+     */
+    public OpenNLPWordTagger(File posModel, File lemmatizerModel)
+            throws IOException {
+        model = posModel.getAbsolutePath() + (lemmatizerModel != null
+                ? "+" + lemmatizerModel.getAbsolutePath()
+                : "");
+        POSModel pos = load(POS_MODELS, posModel, POSModel::new);
+        posTagger = ThreadLocal.withInitial(() -> new POSTaggerME(pos));
+        if (lemmatizerModel == null) {
+            lemmatizer = null;
+        } else if (lemmatizerModel.getName().endsWith(MODEL_EXTENSION)) {
+            LemmatizerModel lemmas = load(LEMMATIZER_MODELS, lemmatizerModel,
+                    LemmatizerModel::new);
+            lemmatizer = ThreadLocal.withInitial(() -> new LemmatizerME(lemmas));
+        } else {
+            // only read, hence shared by all threads
+            DictionaryLemmatizer lemmas = load(LEMMATIZER_MODELS,
+                    lemmatizerModel, DictionaryLemmatizer::new);
+            lemmatizer = ThreadLocal.withInitial(() -> lemmas);
+        }
+    }
+
+    @FunctionalInterface
+    private interface Loader<M> {
+        M load(File file) throws IOException;
+    }
+
+    private static <M> M load(Map<File, ? super M> cache, File file,
+            Loader<M> loader) throws IOException {
+        try {
+            @SuppressWarnings("unchecked")
+            M model = (M) cache.computeIfAbsent(file.getAbsoluteFile(), f -> {
+                try {
+                    return loader.load(f);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            return model;
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    @Override
+    public List<List<String[]>> tag(List<List<String>> utterances) {
+        POSTagger tagger = posTagger.get();
+        Lemmatizer lemmas = lemmatizer != null ? lemmatizer.get() : null;
+        List<List<String[]>> results = new ArrayList<>(utterances.size());
+        for (List<String> utterance : utterances) {
+            String[] tokens = utterance.toArray(new String[0]);
+            String[] tags = tagger.tag(tokens);
+            String[] lemmata = lemmas != null
+                    ? lemmas.lemmatize(tokens, tags)
+                    : tokens;
+            String[][] tagged = new String[tokens.length][];
+            for (int i = 0; i < tokens.length; i++) {
+                tagged[i] = new String[] { tags[i],
+                        NO_LEMMA.equals(lemmata[i]) ? tokens[i] : lemmata[i] };
+            }
+            results.add(Arrays.asList(tagged));
+        }
+        return results;
+    }
+
+    @Override
+    public String getName() {
+        return "OpenNLP";
+    }
+
+    @Override
+    public String getModel() {
+        return model;
+    }
+
+}
@@ -17,6 +17,7 @@ import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Optional;
+import java.util.TreeMap;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
@@ -148,6 +149,10 @@ public class PseudoAlign {
      */
     private List<String> way = new ArrayList<>();
     private DocumentIdentifier docID;
+    /**
+     * grapheme-to-phoneme conversion per language
+     */
+    private final G2PRegistry g2p;
 
     /**
      * make new PseudoAlign for
@@ -172,6 +177,36 @@ public class PseudoAlign {
     public PseudoAlign(Document doc, String language, boolean usePhones,
             boolean phoneticise, boolean force, double timeLength,
             double offset, int every) {
+        this(doc, language, usePhones, phoneticise, force, timeLength, offset,
+                every, new G2PRegistry());
+    }
+
+    /**
+     * make new PseudoAlign for
+     *
+     * @param doc
+     *     a DOM XML document
+     * @param language
+     *     the default document language
+     * @param usePhones
+     *     whether to count relative duration in (pseudo)phones if possible
+     * @param phoneticise
+     *     whether to store the transcriptions in the document
+     * @param force
+     *     whether to force transcription
+     * @param timeLength
+     *     length of audio in seconds
+     * @param offset
+     *     the time offset of the first timeline event
+     * @param every
+     *     number of items after which to insert an orientation anchor
+     * @param g2p
+     *     the grapheme-to-phoneme providers per language
+     */
+    public PseudoAlign(Document doc, String language, boolean usePhones,
+            boolean phoneticise, boolean force, double timeLength,
+            double offset, int every, G2PRegistry g2p) {
+        this.g2p = g2p;
         this.language = language;
         this.doc = doc;
         this.phoneticise = phoneticise;
@@ -390,49 +425,38 @@ public class PseudoAlign {
         LOGGER.warn(String.format("time: %g, offset: %g", timeLength, offset));
         timeLength -= offset;
         // aggregate by language to minimise calls to web service
+        Map<String, String> providers = new TreeMap<>();
         DocUtilities.groupByLanguage("w", doc, language, 1)
                 .forEach((uLanguage, initWords) -> {
-                    Optional<String> locale = GraphToPhoneme
-                            .correspondsTo(uLanguage);
                     String[] transWords;
-                    boolean transcribe = (usePhones && locale.isPresent());
+                    boolean transcribe = false;
                     List<Element> words = Seq.seq(initWords)
                             .filter(w -> !("incomprehensible"
                                     .equals(w.getAttribute("type"))))
                             .toList();
-                    if (transcribe) {
-                        // only transcribe "normal" words
-                        // work with transcriptions
-                        String text = Seq.seq(words).map(Node::getTextContent)
-                                .toString(" ");
-                        LOGGER.info("Transcribing {}", locale.get());
-                        transWords = GraphToPhoneme
-                                .getTranscription(text, locale.get(), true)
-                                .get();
-
-                        if (phoneticise) {
-                            Seq.seq(words).zip(Arrays.asList(transWords))
-                                    .forEach(tup -> {
-                                        if (!force || (!tup.v1
-                                                .hasAttributeNS(TEI_NS, "phon")
-                                                && !tup.v1.hasAttribute(
-                                                        "phon"))) {
-                                            tup.v1.setAttribute("phon", tup.v2);
-                                        }
-                                    });
-                        }
-                        // add transcriptions
-                        @SuppressWarnings("ConstantConditions")
-                        int[] transcribedW = GraphToPhoneme
-                                .countSigns(transWords, transcribe);
-                        for (int i = 0; i < words.size(); i++) {
-                            words.get(i).setAttribute("rel-length",
-                                    String.format("%d", transcribedW[i]));
-                        }
+                    // only transcribe "normal" words
+                    List<String> texts = Seq.seq(words)
+                            .map(Node::getTextContent).toList();
+                    if (usePhones && !texts.isEmpty()) {
+                        G2PRegistry.Transcription transcription = g2p
+                                .transcribe(uLanguage, texts, true);
+                        transcribe = transcription.getProvider().isPhonetic();
+                        transWords = transcription.getWords();
+                        providers.put(uLanguage,
+                                transcription.getProvider().getName());
                     } else {
-                        // fall back to counting letters
-                        transWords = Seq.seq(words).map(Node::getTextContent)
-                                .toArray(String[]::new);
+                        // count letters
+                        transWords = texts.toArray(new String[0]);
+                    }
+                    if (transcribe && phoneticise) {
+                        Seq.seq(words).zip(Arrays.asList(transWords))
+                                .forEach(tup -> {
+                                    if (!force || (!tup.v1
+                                            .hasAttributeNS(TEI_NS, "phon")
+                                            && !tup.v1.hasAttribute("phon"))) {
+                                        tup.v1.setAttribute("phon", tup.v2);
+                                    }
+                                });
                     }
                     int[] lettered = GraphToPhoneme.countSigns(transWords,
                             transcribe);
@@ -463,7 +487,10 @@ public class PseudoAlign {
         itemLength.ifPresent(this::applyItemLength);
         itemLength.ifPresent(this::insertAnchorEvery);
         cleanUp();
-        DocUtilities.makeChange(doc, "Pseudo-aligned");
+        DocUtilities.makeChange(doc, providers.isEmpty() ? "Pseudo-aligned"
+                : "Pseudo-aligned, transcribed with "
+                        + Seq.seq(providers).map(p -> p.v1 + ": " + p.v2)
+                                .toString(", "));
     }
 
     /**
@@ -801,6 +828,17 @@ public class PseudoAlign {
         private final static String BASE_URL = "https://clarin.phonetik"
                 + ".uni-muenchen.de/BASWebServices/services/runG2P";
 
+        /**
+         * milliseconds to wait for a connection to the transcription service,
+         * e.g. on batch nodes without network access
+         */
+        private static final int CONNECT_TIMEOUT = 10000;
+
+        /**
+         * milliseconds to wait for data from the transcription service
+         */
+        private static final int SOCKET_TIMEOUT = 120000;
+
         /**
          * locale separator
          */
@@ -905,14 +943,17 @@ public class PseudoAlign {
                         .addTextBody("featset",
                                 extendedFeatures ? "extended" : "standard")
                         .build();
-                String result = Request.Post(uriBui.build()).body(entity)
+                String result = Request.Post(uriBui.build())
+                        .connectTimeout(CONNECT_TIMEOUT)
+                        .socketTimeout(SOCKET_TIMEOUT).body(entity)
                         .execute().returnContent().asString();
                 Document doc = XMLUtilities.parseXML(result);
                 Element link = XMLUtilities.getElementByTagName(doc,
                         "downloadLink");
                 if (link != null && !"".equals(link.getTextContent())) {
                     String retString = Request.Get(link.getTextContent())
-                            .execute().returnContent()
+                            .connectTimeout(CONNECT_TIMEOUT)
+                            .socketTimeout(SOCKET_TIMEOUT).execute().returnContent()
                             .asString(Charset.forName("UTF-8"))
                             .replace(" ", "");
                     ret = Optional.of(WORD_SEPARATOR.split(retString.trim()));
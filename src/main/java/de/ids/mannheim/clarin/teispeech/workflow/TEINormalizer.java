@@ -30,10 +30,25 @@ public class TEINormalizer {
      */
     private final String language;
 
-    private final WordNormalizer normalizer;
+    private final NormalizerRegistry normalizers;
 
     /**
-     * make new {@link DictionaryNormalizer} that uses a {@link WordNormalizer}
+     * make new {@link TEINormalizer} that uses the normalizers of a
+     * {@link NormalizerRegistry}
+     *
+     * @param registry
+     *            the normalizers per language, loaded when needed
+     * @param language
+     *            an ISO language code
+     */
+    public TEINormalizer(NormalizerRegistry registry, String language) {
+        normalizers = registry;
+        this.language = language != null ? language : "deu";
+    }
+
+    /**
+     * make new {@link TEINormalizer} that uses a {@link WordNormalizer} for
+     * German
      *
      * @param wn
      *            the normalizer
@@ -41,8 +56,8 @@ public class TEINormalizer {
      *            an ISO language code
      */
     public TEINormalizer(WordNormalizer wn, String language) {
-        normalizer = wn;
-        this.language = language != null ? language : "deu";
+        this(new NormalizerRegistry(true), language);
+        normalizers.register("deu", () -> wn);
     }
 
     private TEINormalizer(WordNormalizer wn) {
@@ -50,9 +65,7 @@ public class TEINormalizer {
     }
 
     private TEINormalizer(String language) {
-        normalizer = new DictionaryNormalizer(); // TODO: currently only German
-        // anyway!
-        this.language = language != null ? language : "deu";
+        this(new NormalizerRegistry(true), language);
     }
 
     /**
@@ -62,16 +75,20 @@ public class TEINormalizer {
      *            the XML file DOM
      * @param force
      *            whether to force normalization even if already normalized
+     * @return what has been done
      */
-    public void normalize(Document doc, boolean force) {
+    public NormalizationReport normalize(Document doc, boolean force) {
         Map<String, List<Element>> words = DocUtilities.groupByLanguage("w",
                 doc, language, 1);
 
         List<String> processed = new ArrayList<>();
         List<String> unprocessed = new ArrayList<>();
+        NormalizationReport report = new NormalizationReport();
         words.forEach((lang, ws) -> {
-            // currently, we only support German normalization!
-            if ("deu".equals(lang)) {
+            WordNormalizer normalizer = normalizers.get(lang);
+            if (normalizer != null) {
+                List<Element> elements = new ArrayList<>();
+                List<String> texts = new ArrayList<>();
                 ws.forEach(el -> {
                     if (!force
                             && el.hasAttributeNS(NameSpaces.TEI_NS, "norm")) {
@@ -81,33 +98,46 @@ public class TEINormalizer {
                     if (tx.isEmpty()) {
                         return;
                     }
-                    String normal = normalizer.getNormalised(tx);
-                    if (normal != null) {
-                        String before = el.getAttributeNS(NameSpaces.TEI_NS,
-                                "norm");
+                    elements.add(el);
+                    texts.add(tx);
+                });
+                // one call for all words; unknown words stay as they are:
+                List<String> normals = normalizer.lookup(texts);
+                for (int i = 0; i < elements.size(); i++) {
+                    Element el = elements.get(i);
+                    String tx = texts.get(i);
+                    boolean known = normals.get(i) != null;
+                    String normal = known ? normals.get(i) : tx;
+                    String before = el.getAttributeNS(NameSpaces.TEI_NS,
+                            "norm");
+                    report.count(tx, normal, known, before);
+                    if (!known) {
+                        LOGGER.debug("Cannot normalize «{}», kept as is.",
+                                tx);
+                    } else if (LOGGER.isDebugEnabled()) {
                         if (!before.isEmpty()) {
                             if (!before.equals(normal)) {
-                                LOGGER.info("ReNormalized {} -> {} [was: {}]",
+                                LOGGER.debug("ReNormalized {} -> {} [was: {}]",
                                         tx, normal, before);
                             }
                         } else {
-                            LOGGER.info("Normalized {} -> {}", tx, normal);
+                            LOGGER.debug("Normalized {} -> {}", tx, normal);
                         }
-                        el.setAttributeNS(NameSpaces.TEI_NS, "norm", normal);
-                    } else {
-                        LOGGER.info("Cannot normalize «{}».", tx);
                     }
-                });
+                    el.setAttributeNS(NameSpaces.TEI_NS, "norm", normal);
+                }
                 processed.add(lang);
             } else {
                 unprocessed.add(lang);
             }
         });
 
-        // currently, we only support German normalization!
+        LOGGER.info("Normalization: {}", report);
         DocUtilities.makeChange(doc,
-                "normalized words using the OrthoNormal dictionaries",
+                "normalized words using the OrthoNormal dictionaries ("
+                        + report + ")",
                 processed, unprocessed);
+        return report;
     }
 
 }
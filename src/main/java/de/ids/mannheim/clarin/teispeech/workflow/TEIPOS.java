@@ -1,11 +1,8 @@
 package de.ids.mannheim.clarin.teispeech.workflow;
 
-import com.fasterxml.jackson.core.type.TypeReference;
-import com.fasterxml.jackson.databind.ObjectMapper;
 import de.ids.mannheim.clarin.teispeech.data.DocUtilities;
 import de.ids.mannheim.clarin.teispeech.data.NameSpaces;
-import org.annolab.tt4j.TreeTaggerException;
-import org.annolab.tt4j.TreeTaggerWrapper;
+import de.ids.mannheim.clarin.teispeech.utilities.ParallelUtilities;
 import org.korpora.useful.Utilities;
 import org.korpora.useful.XMLUtilities;
 import org.korpora.useful.LangUtilities;
@@ -16,12 +13,14 @@ import org.w3c.dom.Element;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.stream.Collectors;
 
 /**
- * POS-tag documents in the TEI transcription format with the TreeTagger
+ * POS-tag documents in the TEI transcription format with the TreeTagger,
+ * or another {@link WordTagger} per language
  *
  * pos-tags all &lt;w&gt; Elements in a document.
  *
@@ -44,36 +43,25 @@ public class TEIPOS {
     private final Document doc;
 
     /**
-     * TreeTagger wrapper
+     * the taggers per language
      */
-    private TreeTaggerWrapper<Element> treeTagger;
+    private final TaggerRegistry taggers;
 
-    private static final String TREETAGGER_PATH = "/opt/treetagger";
-    static {
-        System.setProperty("treetagger.home", TREETAGGER_PATH);
-    }
     /**
-     * file with TreeTagger model names
+     * the tags of utterances tagged before
      */
-    private static final String MODELS_PATH = "treeTagger-languages.json";
+    private final TaggingCache cache;
 
     /**
-     * models for TreeTagger – three letter language code to model file name
+     * make new {@link TEIPOS} for
+     *
+     * @param doc
+     *            a DOM XML document
+     * @param language
+     *            the language
      */
-    @SuppressWarnings("CanBeFinal")
-    private static Map<String, String> modelMap;
-
-    static {
-        ObjectMapper mapper = new ObjectMapper();
-        try {
-            modelMap = mapper.readValue(
-                    TEIPOS.class.getClassLoader()
-                            .getResourceAsStream(MODELS_PATH),
-                    new TypeReference<Map<String, String>>() {
-                    });
-        } catch (IOException e) {
-            throw new RuntimeException(e.getMessage());
-        }
+    public TEIPOS(Document doc, String language) {
+        this(doc, language, new TaggerRegistry());
     }
 
     /**
@@ -83,42 +71,46 @@ public class TEIPOS {
      *            a DOM XML document
      * @param language
      *            the language
+     * @param taggers
+     *            the taggers per language
      */
-    public TEIPOS(Document doc, String language) {
-        this.language = language;
-        this.doc = doc;
-        // Point TT4J to the TreeTagger installation directory. The executable
-        // is expected
-        // in the "bin" subdirectory - in this example at
-        // "/opt/treetagger/bin/tree-tagger"
+    public TEIPOS(Document doc, String language, TaggerRegistry taggers) {
+        this(doc, language, taggers, new TaggingCache());
     }
 
     /**
-     * get TreeTagger model file name
+     * make new {@link TEIPOS} for
      *
-     * @param modelName the model name
-     * @return file name
+     * @param doc
+     *            a DOM XML document
+     * @param language
+     *            the language
+     * @param taggers
+     *            the taggers per language
+     * @param cache
+     *            the tags of utterances, e.g. shared by the documents of a
+     *            batch
      */
-    private static String modelName(String modelName) {
-        return System.getProperty("treetagger.home") + "/lib/" + modelName
-                + ".par:utf-8";
+    public TEIPOS(Document doc, String language, TaggerRegistry taggers,
+            TaggingCache cache) {
+        this.language = language;
+        this.doc = doc;
+        this.taggers = taggers;
+        this.cache = cache;
     }
 
     /**
-     * tag all utterances of one language
+     * the words of utterances to be tagged
      *
-     * @param lang
-     *            the language code
      * @param utterances
      *            the list of &lt;u&gt; elements
+     * @param force
+     *            whether to tag utterances that are already tagged
+     * @return the words per utterance
      */
-    private void tagByLanguage(String lang, List<Element> utterances,
-            boolean force) throws IOException {
-        String model = modelMap.get(lang);
-        assert model != null;
-        String modelFName = modelName(model);
-        LOGGER.info("model file is: {}", modelFName);
-        treeTagger.setModel(modelFName);
+    private static List<List<Element>> wordsToTag(List<Element> utterances,
+            boolean force) {
+        List<List<Element>> toTag = new ArrayList<>();
         for (Element u : utterances) {
             List<Element> words = XMLUtilities
                     .toElementStream(
@@ -130,57 +122,100 @@ public class TEIPOS {
                     e -> e.hasAttributeNS(NameSpaces.TEI_NS, "pos"))) {
                 continue;
             }
-            try {
-                treeTagger.process(words);
-            } catch (TreeTaggerException | IOException tte) {
-                throw new RuntimeException(tte);
-            }
+            toTag.add(words);
+        }
+        return toTag;
+    }
+
+    /**
+     * the text of a word as given to the tagger
+     */
+    private static String tokenText(Element elly) {
+        return elly.hasAttribute("normalizer")
+                ? elly.getAttribute("normalizer")
+                : Utilities.removeSpace(elly.getTextContent());
+    }
+
+    /**
+     * tag all utterances of one language
+     *
+     * @param lang
+     *            the language code
+     * @param utterances
+     *            the tokens per utterance
+     * @return part of speech and lemma per token and utterance
+     */
+    private List<List<String[]>> tagByLanguage(String lang,
+            List<List<String>> utterances) {
+        WordTagger tagger = taggers.get(lang);
+        LOGGER.info("tagger is: {} {}", tagger.getName(), tagger.getModel());
+        List<List<String[]>> results;
+        try {
+            results = cache.tag(tagger, utterances);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
         }
         LOGGER.info("Tagged {} utterances in {}.", utterances.size(), lang);
+        return results;
     }
 
     /**
-     * pos-tag the document
+     * pos-tag the document; the languages are tagged concurrently, while the
+     * document is only read and changed in the calling thread
      *
      * @param force
      *            whether to force tagging even if utterance already tagged
      *
      */
     public void posTag(boolean force) {
-
-        // aggregate by language to avoid restarting the tagger all the time
-        treeTagger = new TreeTaggerWrapper<>();
-        try {
-            treeTagger.setAdapter(elly -> elly.hasAttribute("normalizer")
-                    ? elly.getAttribute("normalizer")
-                    : Utilities.removeSpace(elly.getTextContent()));
-            treeTagger.setHandler((token, pos, lemma) -> {
-                token.setAttributeNS(NameSpaces.TEI_NS, "pos", pos);
-                token.setAttributeNS(NameSpaces.TEI_NS, "lemma", lemma);
-            });
-            List<String> tagged = new ArrayList<>();
-            List<String> untagged = new ArrayList<>();
-            DocUtilities.groupByLanguage("u", doc, language, 1)
-                    .forEach((uLanguage, utters) -> {
-                        uLanguage = LangUtilities.getLanguage(uLanguage, uLanguage);
-                        if (modelMap.containsKey(uLanguage)) {
-                            try {
-                                tagByLanguage(uLanguage, utters, force);
-                                tagged.add(uLanguage);
-                            } catch (IOException e) {
-                                throw new RuntimeException(e);
-                            }
-                        } else {
-                            untagged.add(uLanguage);
-                            LOGGER.info("Could not handle {} utterances in {}.",
-                                    utters.size(), uLanguage);
-                        }
-                    });
-            DocUtilities.makeChange(doc, "POS-tagged with TreeTagger", tagged,
-                    untagged);
-        } finally {
-            treeTagger.destroy();
+        // aggregate by language to avoid switching models all the time
+        Map<String, List<List<Element>>> byLanguage = new LinkedHashMap<>();
+        List<String> untagged = new ArrayList<>();
+        DocUtilities.groupByLanguage("u", doc, language, 1)
+                .forEach((uLanguage, utters) -> {
+                    uLanguage = LangUtilities.getLanguage(uLanguage, uLanguage);
+                    if (taggers.getLanguages().contains(uLanguage)) {
+                        byLanguage.computeIfAbsent(uLanguage,
+                                l -> new ArrayList<>())
+                                .addAll(wordsToTag(utters, force));
+                    } else {
+                        untagged.add(uLanguage);
+                        LOGGER.info("Could not handle {} utterances in {}.",
+                                utters.size(), uLanguage);
+                    }
+                });
+        List<String> tagged = new ArrayList<>(byLanguage.keySet());
+        List<List<List<String[]>>> results = ParallelUtilities.map(tagged,
+                tagged.size(), lang -> tagByLanguage(lang,
+                        byLanguage.get(lang).stream()
+                                .map(words -> words.stream()
+                                        .map(TEIPOS::tokenText)
+                                        .collect(Collectors.toList()))
+                                .collect(Collectors.toList())));
+        for (int l = 0; l < tagged.size(); l++) {
+            List<List<Element>> utterances = byLanguage.get(tagged.get(l));
+            for (int u = 0; u < utterances.size(); u++) {
+                List<Element> words = utterances.get(u);
+                List<String[]> tags = results.get(l).get(u);
+                for (int w = 0; w < words.size(); w++) {
+                    String[] tag = tags.get(w);
+                    if (tag != null) {
+                        words.get(w).setAttributeNS(NameSpaces.TEI_NS, "pos",
+                                tag[0]);
+                        words.get(w).setAttributeNS(NameSpaces.TEI_NS,
+                                "lemma", tag[1]);
+                    }
+                }
+            }
         }
+        LOGGER.info(String.format(
+                "tagging cache: %d hits, %d misses (hit rate %.1f%%)",
+                cache.getHits(), cache.getMisses(),
+                cache.getHitRate() * 100));
+        String names = tagged.stream().map(lang -> taggers.get(lang).getName())
+                .distinct().sorted().collect(Collectors.joining(", "));
+        DocUtilities.makeChange(doc, "POS-tagged with "
+                + (names.isEmpty() ? "TreeTagger" : names), tagged, untagged);
     }
 
 }
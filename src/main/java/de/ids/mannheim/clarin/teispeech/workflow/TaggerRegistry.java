@@ -0,0 +1,175 @@
+package de.ids.mannheim.clarin.teispeech.workflow;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * the {@link WordTagger}s per language, by the language codes used in
+ * {@value #TREETAGGER_MODELS}.
+ *
+ * <p>
+ * By default, the languages with an installed TreeTagger model are tagged
+ * with the TreeTagger. A mapping file can select another tagger per
+ * language, as a JSON object from language codes to objects with the
+ * members
+ * <ul>
+ * <li>{@code tagger}: {@code treetagger} or {@code opennlp}</li>
+ * <li>{@code model}: the TreeTagger model name, or the OpenNLP
+ * part-of-speech model file</li>
+ * <li>{@code lemmatizer}: the OpenNLP lemmatizer model or dictionary file,
+ * optional, see {@link OpenNLPWordTagger}</li>
+ * </ul>
+ * Relative file names are resolved against the directory of the mapping
+ * file. A tagger is only made when it is first asked for, and then shared.
+ *
+ * @author bfi
+ *
+ */
+public class TaggerRegistry {
+
+    /**
+     * file with TreeTagger model names
+     */
+    private static final String TREETAGGER_MODELS = "treeTagger-languages.json";
+
+    /**
+     * models for TreeTagger – language code to model file name
+     */
+    private static final Map<String, String> modelMap;
+
+    static {
+        ObjectMapper mapper = new ObjectMapper();
+        try (InputStream models = TaggerRegistry.class.getClassLoader()
+                .getResourceAsStream(TREETAGGER_MODELS)) {
+            modelMap = mapper.readValue(models,
+                    new TypeReference<Map<String, String>>() {
+                    });
+        } catch (IOException e) {
+            throw new RuntimeException(e.getMessage());
+        }
+    }
+
+    private final Map<String, Supplier<WordTagger>> factories = new ConcurrentHashMap<>();
+    private final Map<String, WordTagger> taggers = new ConcurrentHashMap<>();
+
+    /**
+     * make a registry with the installed TreeTagger models
+     *
+     * @param pool
+     *            the running TreeTaggers
+     */
+    public TaggerRegistry(TreeTaggerPool pool) {
+        modelMap.forEach((language, model) -> {
+            if (TreeTaggerWordTagger.hasModel(model)) {
+                register(language,
+                        () -> new TreeTaggerWordTagger(model, pool));
+            }
+        });
+    }
+
+    /**
+     * make a registry with the installed TreeTagger models, tagged by the
+     * TreeTaggers shared in the JVM
+     */
+    public TaggerRegistry() {
+        this(TreeTaggerPool.getShared());
+    }
+
+    /**
+     * register a tagger for a language, replacing any registered before
+     * unless it is already in use
+     *
+     * @param language
+     *            the language code
+     * @param factory
+     *            makes the tagger when it is first needed
+     */
+    public void register(String language, Supplier<WordTagger> factory) {
+        factories.put(language, factory);
+    }
+
+    /**
+     * register the taggers of a mapping file
+     *
+     * @param mapping
+     *            the JSON mapping file
+     * @param pool
+     *            the running TreeTaggers, for TreeTagger models
+     * @throws IOException
+     *             if the file cannot be read
+     */
+    public void read(File mapping, TreeTaggerPool pool) throws IOException {
+        Map<String, Map<String, String>> entries = new ObjectMapper()
+                .readValue(mapping,
+                        new TypeReference<Map<String, Map<String, String>>>() {
+                        });
+        File dir = mapping.getAbsoluteFile().getParentFile();
+        entries.forEach((language, entry) -> {
+            String model = entry.get("model");
+            if (model == null) {
+                throw new IllegalArgumentException(String.format(
+                        "No model for «%s» in %s!", language, mapping));
+            }
+            String tagger = entry.getOrDefault("tagger", "treetagger");
+            switch (tagger) {
+            case "treetagger":
+                register(language,
+                        () -> new TreeTaggerWordTagger(model, pool));
+                break;
+            case "opennlp":
+                File lemmatizer = entry.containsKey("lemmatizer")
+                        ? resolve(dir, entry.get("lemmatizer"))
+                        : null;
+                register(language, () -> {
+                    try {
+                        return new OpenNLPWordTagger(resolve(dir, model),
+                                lemmatizer);
+                    } catch (IOException e) {
+                        throw new RuntimeException(e);
+                    }
+                });
+                break;
+            default:
+                throw new IllegalArgumentException(String.format(
+                        "Unknown tagger «%s» for «%s» in %s!", tagger,
+                        language, mapping));
+            }
+        });
+    }
+
+    private static File resolve(File dir, String name) {
+        File file = new File(name);
+        return file.isAbsolute() ? file : new File(dir, name);
+    }
+
+    /**
+     * @return the languages with a registered tagger
+     */
+    public Set<String> getLanguages() {
+        return factories.keySet();
+    }
+
+    /**
+     * the tagger for a language, made if necessary
+     *
+     * @param language
+     *            the language code
+     * @return the tagger, or {@code null} if none is registered
+     */
+    public WordTagger get(String language) {
+        Supplier<WordTagger> factory = factories.get(language);
+        if (factory == null) {
+            return null;
+        }
+        return taggers.computeIfAbsent(language, lang -> factory.get());
+    }
+
+}
@@ -0,0 +1,177 @@
+package de.ids.mannheim.clarin.teispeech.workflow;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * parts of speech and lemmas of utterances, by tagger model and tokens, to
+ * be shared by {@link TEIPOS}es, e.g. for all documents of a batch;
+ * backchannels and formulaic utterances recur often, and taggers tag every
+ * utterance on its own, so the same tokens always get the same tags.
+ *
+ * <p>
+ * The least recently used utterances are dropped when the cache is full;
+ * utterances longer than {@link #MAX_LENGTH} tokens, which rarely recur, are
+ * not cached. The cache is thread-safe.
+ *
+ * @author bfi
+ *
+ */
+public class TaggingCache {
+
+    /**
+     * the default maximal number of cached utterances
+     */
+    public static final int DEFAULT_SIZE = 10000;
+
+    /**
+     * the maximal number of tokens of cached utterances
+     */
+    public static final int MAX_LENGTH = 30;
+
+    private final Map<Key, List<String[]>> tagged;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    /**
+     * make a cache of {@link #DEFAULT_SIZE}
+     */
+    public TaggingCache() {
+        this(DEFAULT_SIZE);
+    }
+
+    /**
+     * make a cache
+     *
+     * @param size
+     *     the maximal number of cached utterances
+     */
+    public TaggingCache(int size) {
+        tagged = Collections
+                .synchronizedMap(new LinkedHashMap<Key, List<String[]>>(16,
+                        0.75f, true) {
+                    private static final long serialVersionUID = 1L;
+
+                    @Override
+                    protected boolean removeEldestEntry(
+                            Map.Entry<Key, List<String[]>> eldest) {
+                        return size() > size;
+                    }
+                });
+    }
+
+    /**
+     * tag utterances, taking those in the cache from it; the others are
+     * tagged in one call, and each only once
+     *
+     * @param tagger
+     *     the tagger
+     * @param utterances
+     *     the tokens of the utterances
+     * @return part of speech and lemma per token and utterance, as by
+     *     {@link WordTagger#tag(List)}
+     * @throws IOException
+     *     if the tagger failed
+     */
+    List<List<String[]>> tag(WordTagger tagger, List<List<String>> utterances)
+            throws IOException {
+        String model = tagger.getModel();
+        List<List<String[]>> results = new ArrayList<>(utterances.size());
+        // utterances to tag, and where their results go:
+        Map<List<String>, List<Integer>> toTag = new LinkedHashMap<>();
+        for (int u = 0; u < utterances.size(); u++) {
+            List<String> tokens = utterances.get(u);
+            List<String[]> cached = tokens.size() <= MAX_LENGTH
+                    ? tagged.get(new Key(model, tokens))
+                    : null;
+            List<Integer> positions = toTag.get(tokens);
+            // repeated utterances would be cached when tagging one by one:
+            if (cached != null || positions != null) {
+                hits.incrementAndGet();
+            } else {
+                misses.incrementAndGet();
+            }
+            results.add(cached);
+            if (cached == null) {
+                toTag.computeIfAbsent(tokens, t -> new ArrayList<>()).add(u);
+            }
+        }
+        if (toTag.isEmpty()) {
+            return results;
+        }
+        List<List<String>> distinct = new ArrayList<>(toTag.keySet());
+        List<List<String[]>> fresh = tagger.tag(distinct);
+        for (int d = 0; d < distinct.size(); d++) {
+            List<String> tokens = distinct.get(d);
+            List<String[]> tags = fresh.get(d);
+            if (tokens.size() <= MAX_LENGTH) {
+                // copies, so as not to keep the lists of the whole call:
+                tagged.put(new Key(model, new ArrayList<>(tokens)),
+                        Collections.unmodifiableList(new ArrayList<>(tags)));
+            }
+            for (int u : toTag.get(tokens)) {
+                results.set(u, tags);
+            }
+        }
+        return results;
+    }
+
+    /**
+     * @return the number of utterances found in the cache, or repeating an
+     *     utterance tagged in the same call
+     */
+    public long getHits() {
+        return hits.get();
+    }
+
+    /**
+     * @return the number of utterances not found in the cache
+     */
+    public long getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * @return the proportion of utterances found in the cache, 0 if there
+     *     were none
+     */
+    public double getHitRate() {
+        long total = hits.get() + misses.get();
+        return total == 0 ? 0 : (double) hits.get() / total;
+    }
+
+    private static class Key {
+        private final String model;
+        private final List<String> tokens;
+
+        private Key(String model, List<String> tokens) {
+            this.model = model;
+            this.tokens = tokens;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) o;
+            return tokens.equals(other.tokens) && model.equals(other.model);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(model, tokens);
+        }
+    }
+
+}
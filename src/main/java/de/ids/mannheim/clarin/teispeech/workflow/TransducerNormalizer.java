@@ -0,0 +1,75 @@
+package de.ids.mannheim.clarin.teispeech.workflow;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * a normalizer with the dictionary of {@link DictionaryNormalizer}, held as a
+ * {@link LexiconTransducer}, which needs much less heap than a hash map. The
+ * dictionary is only read to build the transducer, and not kept; there are
+ * no overrides or fuzzy lookup.
+ *
+ * @author bfi
+ *
+ */
+public class TransducerNormalizer implements WordNormalizer {
+
+    private final static Logger LOGGER = LoggerFactory
+            .getLogger(TransducerNormalizer.class.getName());
+
+    private static LexiconTransducer transducer;
+
+    private final LexiconTransducer lexicon;
+    private final boolean keepCase;
+
+    /**
+     * the transducer, built on first use and shared by all instances
+     *
+     * @return the transducer
+     */
+    public static synchronized LexiconTransducer getTransducer() {
+        if (transducer == null) {
+            long start = System.nanoTime();
+            Map<String, String> entries = new HashMap<>();
+            DictionaryNormalizer.readEntries(entries::put);
+            transducer = LexiconTransducer.build(entries);
+            LOGGER.info("Transducer: {} entries, {} states, {} arcs, {} ms",
+                    transducer.size(), transducer.stateCount(),
+                    transducer.arcCount(),
+                    (System.nanoTime() - start) / 1000000);
+        }
+        return transducer;
+    }
+
+    /**
+     * make a {@link TransducerNormalizer}
+     *
+     * @param keepCase
+     *     whether to keep upper case letters (and hence leave them untouched)
+     */
+    public TransducerNormalizer(boolean keepCase) {
+        this.keepCase = keepCase;
+        lexicon = getTransducer();
+    }
+
+    @Override
+    public String getNormalised(String in) {
+        String normalised = lookup(in);
+        return normalised != null ? normalised : in;
+    }
+
+    @Override
+    public String lookup(String in) {
+        return lexicon.get(keepCase ? in : in.toLowerCase());
+    }
+
+    @Override
+    public List<String> lookup(List<String> words) {
+        return words.stream().map(this::lookup).collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,371 @@
+package de.ids.mannheim.clarin.teispeech.workflow;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.annolab.tt4j.TreeTaggerWrapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * running TreeTagger processes, by model file, so that documents do not
+ * start the tagger and load its model every time.
+ *
+ * <p>
+ * A {@link Tagger} is checked out for a model, used by one thread, and
+ * returned by closing it. At most {@link #getSize()} taggers per model are
+ * checked out at the same time; further checkouts wait. Taggers idle for
+ * longer than {@link #PROBE_AFTER} ms are probed before they are handed out.
+ * A call that fails or takes longer than the timeout kills the process, and
+ * the tagger is replaced by a new one at the next checkout.
+ *
+ * @author bfi
+ *
+ */
+public final class TreeTaggerPool {
+
+    private final static Logger LOGGER = LoggerFactory
+            .getLogger(TreeTaggerPool.class.getName());
+
+    /**
+     * default number of taggers per model
+     */
+    public static final int DEFAULT_SIZE = Runtime.getRuntime()
+            .availableProcessors();
+
+    /**
+     * default timeout of a call in milliseconds
+     */
+    public static final long DEFAULT_TIMEOUT = 60000;
+
+    /**
+     * idle time in milliseconds after which taggers are probed
+     */
+    static final long PROBE_AFTER = 30000;
+
+    /**
+     * precedes utterances tagged in one call: two sentence ends, the
+     * context after the flush sequence that ends every call. The first
+     * utterance needs it too, as TT4J may still be writing the flush
+     * sequence of the previous call when the next one starts.
+     */
+    static final List<String> BOUNDARY = Collections
+            .unmodifiableList(Arrays.asList(".", "."));
+
+    /**
+     * the maximal number of tokens per call when tagging utterances, so that
+     * a call can finish within the timeout
+     */
+    static final int MAX_CALL_TOKENS = 50000;
+
+    /**
+     * the threads calling the taggers, so that callers can time out
+     */
+    private static final ExecutorService CALLS = Executors
+            .newCachedThreadPool(runnable -> {
+                Thread thread = new Thread(runnable, "TreeTagger call");
+                thread.setDaemon(true);
+                return thread;
+            });
+
+    private static TreeTaggerPool shared;
+
+    private final int size;
+    private final long timeout;
+    private final Map<String, ModelPool> pools = new ConcurrentHashMap<>();
+
+    /**
+     * make a pool
+     *
+     * @param size
+     *     the maximal number of taggers per model
+     * @param timeout
+     *     the maximal duration of a call in milliseconds
+     */
+    public TreeTaggerPool(int size, long timeout) {
+        if (size < 1) {
+            throw new IllegalArgumentException("Pool size must be positive!");
+        }
+        this.size = size;
+        this.timeout = timeout;
+    }
+
+    /**
+     * the pool shared in this JVM, with {@link #DEFAULT_SIZE} taggers per
+     * model and {@link #DEFAULT_TIMEOUT}; its processes are killed at exit
+     *
+     * @return the pool
+     */
+    public static synchronized TreeTaggerPool getShared() {
+        if (shared == null) {
+            shared = new TreeTaggerPool(DEFAULT_SIZE, DEFAULT_TIMEOUT);
+            Runtime.getRuntime().addShutdownHook(
+                    new Thread(shared::close, "TreeTagger shutdown"));
+        }
+        return shared;
+    }
+
+    /**
+     * @return the maximal number of taggers per model
+     */
+    public int getSize() {
+        return size;
+    }
+
+    /**
+     * check out a tagger, waiting for one if all are in use
+     *
+     * @param model
+     *     the model file, optionally followed by {@code :} and its encoding
+     * @return the tagger, to be closed after use
+     * @throws IOException
+     *     if no tagger could be started
+     */
+    public Tagger checkout(String model) throws IOException {
+        ModelPool pool = pools.computeIfAbsent(model, m -> new ModelPool());
+        try {
+            pool.permits.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        }
+        try {
+            TaggerProcess process;
+            while ((process = pool.poll()) != null) {
+                if (System.currentTimeMillis() - process.lastUsed < PROBE_AFTER
+                        || process.probe()) {
+                    return new Tagger(model, pool, process);
+                }
+                LOGGER.warn("Replacing unresponsive tagger for {}", model);
+                process.kill();
+            }
+            process = new TaggerProcess(model);
+            if (!process.probe()) {
+                process.kill();
+                throw new IOException("Could not start TreeTagger with "
+                        + model);
+            }
+            LOGGER.info("Started tagger for {}", model);
+            return new Tagger(model, pool, process);
+        } catch (IOException | RuntimeException e) {
+            pool.permits.release();
+            throw e;
+        }
+    }
+
+    /**
+     * stop the idle taggers
+     */
+    public void close() {
+        pools.values().forEach(pool -> {
+            TaggerProcess process;
+            while ((process = pool.poll()) != null) {
+                process.kill();
+            }
+        });
+    }
+
+    /**
+     * the idle processes of a model
+     */
+    private final class ModelPool {
+        private final Semaphore permits = new Semaphore(size, true);
+        private final Deque<TaggerProcess> idle = new ArrayDeque<>();
+
+        private synchronized TaggerProcess poll() {
+            return idle.pollFirst();
+        }
+
+        private synchronized void offer(TaggerProcess process) {
+            idle.addFirst(process);
+        }
+    }
+
+    /**
+     * a running TreeTagger with a model
+     */
+    private final class TaggerProcess {
+        private final TreeTaggerWrapper<Integer> wrapper = new TreeTaggerWrapper<>();
+        private List<String> tokens;
+        private String[][] results;
+        private long lastUsed;
+        private boolean broken;
+
+        private TaggerProcess(String model) throws IOException {
+            wrapper.setModel(model);
+            wrapper.setAdapter(i -> tokens.get(i));
+            wrapper.setHandler((i, pos, lemma) -> results[i] = new String[] {
+                    pos, lemma });
+        }
+
+        private List<String[]> tag(List<String> tokens) throws IOException {
+            this.tokens = tokens;
+            results = new String[tokens.size()][];
+            List<Integer> positions = new ArrayList<>(tokens.size());
+            for (int i = 0; i < tokens.size(); i++) {
+                positions.add(i);
+            }
+            Future<?> call = CALLS.submit(() -> {
+                wrapper.process(positions);
+                return null;
+            });
+            try {
+                call.get(timeout, TimeUnit.MILLISECONDS);
+                return Collections.unmodifiableList(Arrays.asList(results));
+            } catch (TimeoutException e) {
+                kill();
+                call.cancel(true);
+                throw new IOException(String.format(
+                        "TreeTagger timed out after %d ms", timeout));
+            } catch (ExecutionException e) {
+                kill();
+                Throwable cause = e.getCause();
+                if (cause instanceof IOException) {
+                    throw (IOException) cause;
+                }
+                throw new IOException(cause.getMessage(), cause);
+            } catch (InterruptedException e) {
+                kill();
+                Thread.currentThread().interrupt();
+                throw new RuntimeException(e);
+            } finally {
+                this.tokens = null;
+                results = null;
+                lastUsed = System.currentTimeMillis();
+            }
+        }
+
+        /**
+         * whether the tagger answers
+         */
+        private boolean probe() {
+            try {
+                return tag(Collections.singletonList(".")).get(0) != null;
+            } catch (IOException e) {
+                LOGGER.warn("TreeTagger probe failed: {}", e.getMessage());
+                return false;
+            }
+        }
+
+        private void kill() {
+            broken = true;
+            wrapper.destroy();
+        }
+    }
+
+    /**
+     * a TreeTagger checked out from the pool, to be used by one thread and
+     * closed after use
+     */
+    public final class Tagger implements AutoCloseable {
+        private final String model;
+        private final ModelPool pool;
+        private TaggerProcess process;
+
+        private Tagger(String model, ModelPool pool, TaggerProcess process) {
+            this.model = model;
+            this.pool = pool;
+            this.process = process;
+        }
+
+        /**
+         * @return the model file
+         */
+        public String getModel() {
+            return model;
+        }
+
+        /**
+         * tag a sequence of tokens
+         *
+         * @param tokens
+         *     the tokens
+         * @return part of speech and lemma per token; {@code null} for
+         *     tokens the TreeTagger cannot handle, e.g. empty ones
+         * @throws IOException
+         *     if the tagger failed or timed out; it is then replaced
+         */
+        public List<String[]> tag(List<String> tokens) throws IOException {
+            if (process == null) {
+                throw new IllegalStateException("Tagger already returned!");
+            }
+            if (process.broken) {
+                throw new IOException("Tagger failed before!");
+            }
+            return process.tag(tokens);
+        }
+
+        /**
+         * tag utterances in as few calls as possible: they are sent as one
+         * stream, each preceded by {@link #BOUNDARY}, so that every
+         * utterance starts in the same context as when tagged on its own
+         *
+         * @param utterances
+         *     the tokens of the utterances
+         * @return part of speech and lemma per token and utterance, as by
+         *     {@link #tag(List)}
+         * @throws IOException
+         *     if the tagger failed or timed out; it is then replaced
+         */
+        public List<List<String[]>> tagUtterances(
+                List<List<String>> utterances) throws IOException {
+            List<List<String[]>> results = new ArrayList<>(utterances.size());
+            List<String> tokens = new ArrayList<>();
+            int first = 0;
+            for (int u = 0; u <= utterances.size(); u++) {
+                if (u == utterances.size() || (u > first && tokens.size()
+                        + utterances.get(u).size() > MAX_CALL_TOKENS)) {
+                    List<String[]> tagged = tokens.isEmpty()
+                            ? Collections.emptyList()
+                            : tag(tokens);
+                    int pos = 0;
+                    for (int v = first; v < u; v++) {
+                        pos += BOUNDARY.size();
+                        int length = utterances.get(v).size();
+                        results.add(tagged.subList(pos, pos + length));
+                        pos += length;
+                    }
+                    tokens.clear();
+                    first = u;
+                }
+                if (u < utterances.size()) {
+                    tokens.addAll(BOUNDARY);
+                    tokens.addAll(utterances.get(u));
+                }
+            }
+            return results;
+        }
+
+        /**
+         * return the tagger to the pool, or stop it if it failed
+         */
+        @Override
+        public void close() {
+            if (process == null) {
+                return;
+            }
+            if (process.broken) {
+                LOGGER.warn("Discarding failed tagger for {}", model);
+            } else {
+                pool.offer(process);
+            }
+            process = null;
+            pool.permits.release();
+        }
+    }
+
+}
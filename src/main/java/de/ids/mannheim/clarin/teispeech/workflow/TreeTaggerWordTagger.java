@@ -0,0 +1,89 @@
+package de.ids.mannheim.clarin.teispeech.workflow;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * tags with a TreeTagger model, through a {@link TreeTaggerPool}.
+ *
+ * <p>
+ * The TreeTagger installation is taken from the system property
+ * {@code treetagger.home}, by default {@value #TREETAGGER_PATH}.
+ *
+ * @author bfi
+ *
+ */
+public class TreeTaggerWordTagger implements WordTagger {
+
+    private static final String TREETAGGER_PATH = "/opt/treetagger";
+    static {
+        if (System.getProperty("treetagger.home") == null
+                && System.getenv("TREETAGGER_HOME") == null) {
+            System.setProperty("treetagger.home", TREETAGGER_PATH);
+        }
+    }
+
+    private final String modelFile;
+    private final TreeTaggerPool pool;
+
+    /**
+     * make a tagger
+     *
+     * @param model
+     *            the model name, e.g. {@code german} for
+     *            {@code lib/german.par} in the TreeTagger installation
+     * @param pool
+     *            the running TreeTaggers
+     */
+    public TreeTaggerWordTagger(String model, TreeTaggerPool pool) {
+        this.modelFile = modelFile(model);
+        this.pool = pool;
+    }
+
+    /**
+     * get TreeTagger model file name
+     *
+     * @param modelName the model name
+     * @return file name
+     */
+    private static String modelFile(String modelName) {
+        return modelPath(modelName) + ":utf-8";
+    }
+
+    private static String modelPath(String modelName) {
+        String home = System.getProperty("treetagger.home",
+                System.getenv("TREETAGGER_HOME"));
+        return home + "/lib/" + modelName + ".par";
+    }
+
+    /**
+     * whether a model is installed
+     *
+     * @param model
+     *            the model name
+     * @return whether its file exists
+     */
+    public static boolean hasModel(String model) {
+        return new File(modelPath(model)).isFile();
+    }
+
+    @Override
+    public List<List<String[]>> tag(List<List<String>> utterances)
+            throws IOException {
+        try (TreeTaggerPool.Tagger treeTagger = pool.checkout(modelFile)) {
+            return treeTagger.tagUtterances(utterances);
+        }
+    }
+
+    @Override
+    public String getName() {
+        return "TreeTagger";
+    }
+
+    @Override
+    public String getModel() {
+        return modelFile;
+    }
+
+}
@@ -1,7 +1,10 @@
 package de.ids.mannheim.clarin.teispeech.workflow;
 
+import java.util.ArrayList;
+import java.util.List;
+
 /**
- * A WordNormalizer can normalize single words.
+ * A WordNormalizer can normalize single words, or many at once.
  *
  * @author bfi
  *
@@ -17,4 +20,49 @@ public interface WordNormalizer {
      */
     String getNormalised(String word);
 
+    /**
+     * normalize a single word if it is known; by default, every word counts
+     * as known. Normalizers that tell unknown words apart leave them as they
+     * are in {@link #getNormalised(String)}.
+     *
+     * @param word
+     *            – the form to be normalized
+     * @return normalized form, or {@code null} if the word is unknown
+     */
+    default String lookup(String word) {
+        return getNormalised(word);
+    }
+
+    /**
+     * normalize many words, e.g. all words of a document in a language, at
+     * once; by default, word by word. Normalizers that work better on
+     * batches, e.g. by looking up each distinct form once, override this.
+     *
+     * @param words
+     *            – the forms to be normalized
+     * @return normalized forms, in the same order
+     */
+    default List<String> getNormalised(List<String> words) {
+        List<String> normalised = new ArrayList<>(words.size());
+        for (String word : words) {
+            normalised.add(getNormalised(word));
+        }
+        return normalised;
+    }
+
+    /**
+     * normalize many words at once if they are known, see
+     * {@link #lookup(String)}; by default, every word counts as known, so
+     * that this is {@link #getNormalised(List)}. Normalizers that override
+     * {@link #lookup(String)} override this, too.
+     *
+     * @param words
+     *            – the forms to be normalized
+     * @return normalized forms, in the same order, {@code null} for unknown
+     *         words
+     */
+    default List<String> lookup(List<String> words) {
+        return getNormalised(words);
+    }
+
 }
@@ -0,0 +1,39 @@
+package de.ids.mannheim.clarin.teispeech.workflow;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * A WordTagger assigns parts of speech and lemmas to the words of
+ * utterances; implementations must be usable from several threads.
+ *
+ * @author bfi
+ *
+ */
+public interface WordTagger {
+
+    /**
+     * tag utterances
+     *
+     * @param utterances
+     *            the tokens of the utterances
+     * @return part of speech and lemma per token and utterance;
+     *         {@code null} for tokens that could not be tagged
+     * @throws IOException
+     *             if the tagger failed
+     */
+    List<List<String[]>> tag(List<List<String>> utterances)
+            throws IOException;
+
+    /**
+     * @return the name of the tagger, for the revision description
+     */
+    String getName();
+
+    /**
+     * @return the model, e.g. its file; taggers with the same model must
+     *         tag the same utterances the same way
+     */
+    String getModel();
+
+}
@@ -0,0 +1,92 @@
+package de.ids.mannheim.clarin.teispeech.workflow;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+/**
+ * check that tagging utterances in one TreeTagger call gives the same tags
+ * and lemmas as tagging each utterance in a call of its own, with the
+ * stand-in tagger in {@code src/test/treetagger}, whose tags depend on the
+ * previous one
+ *
+ * @author bfi
+ *
+ */
+class TreeTaggerPoolTest {
+
+    private static final File HOME = new File("src/test/treetagger");
+    private static final File TEXTS = new File("src/test/txt");
+
+    private static TreeTaggerPool pool;
+
+    @BeforeAll
+    static void setUp() {
+        System.setProperty("treetagger.home", HOME.getAbsolutePath());
+        pool = new TreeTaggerPool(1, TreeTaggerPool.DEFAULT_TIMEOUT);
+    }
+
+    @AfterAll
+    static void tearDown() {
+        pool.close();
+    }
+
+    /**
+     * @return the utterances of the test texts, one per non-empty line, as
+     *     whitespace-separated tokens
+     */
+    private static List<List<String>> readUtterances() throws IOException {
+        List<List<String>> utterances = new ArrayList<>();
+        File[] files = Objects.requireNonNull(TEXTS.listFiles(
+                (dir, name) -> name.endsWith(".txt")));
+        Arrays.sort(files);
+        for (File file : files) {
+            for (String line : Files.readAllLines(file.toPath(),
+                    StandardCharsets.UTF_8)) {
+                line = line.trim();
+                if (!line.isEmpty()) {
+                    utterances.add(Arrays.asList(line.split("\\s+")));
+                }
+            }
+        }
+        return utterances;
+    }
+
+    @Test
+    void tagUtterancesLikeOneByOne() throws IOException {
+        List<List<String>> utterances = readUtterances();
+        assertFalse(utterances.isEmpty());
+        try (TreeTaggerPool.Tagger tagger = pool.checkout(
+                HOME.getAbsolutePath() + "/lib/german.par:utf-8")) {
+            List<List<String[]>> single = new ArrayList<>();
+            for (List<String> utterance : utterances) {
+                single.add(tagger.tag(utterance));
+            }
+            List<List<String[]>> session = tagger.tagUtterances(utterances);
+            assertEquals(utterances.size(), session.size());
+            for (int u = 0; u < utterances.size(); u++) {
+                assertEquals(single.get(u).size(), session.get(u).size());
+                for (int t = 0; t < utterances.get(u).size(); t++) {
+                    assertArrayEquals(single.get(u).get(t),
+                            session.get(u).get(t), String.format(
+                                    "«%s» in utterance %d",
+                                    utterances.get(u).get(t), u));
+                }
+            }
+        }
+    }
+
+}